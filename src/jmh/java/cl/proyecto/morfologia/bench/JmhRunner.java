@@ -0,0 +1,48 @@
+package cl.proyecto.morfologia.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lanzador de JMH: acepta las mismas opciones que org.openjdk.jmh.Main (también -h, -l,
+ * -lp, -lprof y -lrf, que solo informan) y, al medir, si no se indica ningún perfilador
+ * (-prof) agrega el de GC para reportar la tasa de asignación (gc.alloc.rate,
+ * gc.alloc.rate.norm) y el número/tiempo de GCs.
+ *
+ * Sin patrones de inclusión corre {@link MorphologyBench} y {@link MorphologySimdBench}.
+ * Otros perfiladores útiles: -prof jfr (Java Flight Recorder), -prof stack.
+ */
+public final class JmhRunner {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp()) {
+            cli.showHelp();
+            return;
+        }
+        if (cli.shouldListProfilers()) {
+            cli.listProfilers();
+            return;
+        }
+        if (cli.shouldListResultFormats()) {
+            cli.listResultFormats();
+            return;
+        }
+        ChainedOptionsBuilder opts = new OptionsBuilder().parent(cli);
+        if (cli.getIncludes().isEmpty()) {
+            opts.include(MorphologyBench.class.getSimpleName()).include(MorphologySimdBench.class.getSimpleName());
+        }
+        if (cli.shouldList()) {
+            new Runner(opts.build()).list();
+            return;
+        }
+        if (cli.shouldListWithParams()) {
+            new Runner(opts.build()).listWithParams(cli);
+            return;
+        }
+        if (cli.getProfilers().isEmpty()) opts.addProfiler(GCProfiler.class);
+        new Runner(opts.build()).run();
+    }
+}
@@ -0,0 +1,88 @@
+package cl.proyecto.morfologia.bench;
+
+import cl.proyecto.morfologia.core.Engines;
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks JMH de los motores de morfología.
+ *
+ * Parametrizados por tamaño de imagen, SE, operación, política de borde, hilos y motor.
+ * La imagen es sintética (no requiere archivos de entrada). Los valores por defecto
+ * son un subconjunto razonable; se pueden cambiar con -p, por ejemplo:
+ *   -p size=4096 -p se=rect:31x31,disk:9 -p mode=seq,engine
+ *
+ * El modo simd se mide aparte en {@link MorphologySimdBench}, el único que necesita el
+ * módulo incubador de la Vector API en sus forks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class MorphologyBench {
+
+    @Param({"512", "2048"})
+    public int size;
+
+    @Param({"1", "5"})
+    public String se;
+
+    @Param({"erosion"})
+    public String op;
+
+    @Param({"ignore"})
+    public String edge;
+
+    @Param({"8"})
+    public int threads;
+
+    @Param({"seq", "par", "par-shared", "packed", "fused", "fused-par", "engine"})
+    public String mode;
+
+    private BufferedImage img;
+    private boolean[][] seMask;
+    private Operation operation;
+    private EdgePolicy edgePolicy;
+    private cl.proyecto.morfologia.model.Mode engine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        img = synthetic(size, size, 42);
+        seMask = StructuringElement.parse(se);
+        operation = Operation.from(op);
+        edgePolicy = EdgePolicy.from(edge);
+        engine = cl.proyecto.morfologia.model.Mode.from(mode);
+    }
+
+    @Benchmark
+    public BufferedImage apply() throws Exception {
+        return Engines.apply(engine, img, operation, seMask, edgePolicy, threads);
+    }
+
+    /**
+     * Imagen sintética con gradientes suaves y ruido (comportamiento parecido a una foto).
+     */
+    static BufferedImage synthetic(int w, int h, long seed) {
+        BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Random rnd = new Random(seed);
+        for (int y=0;y<h;y++){
+            for (int x=0;x<w;x++){
+                int r = clamp(128 + (int)(60*Math.sin(x/17.0)) + rnd.nextInt(32) - 16);
+                int g = clamp(128 + (int)(60*Math.cos(y/13.0)) + rnd.nextInt(32) - 16);
+                int b = clamp((x ^ y) & 0xFF);
+                img.setRGB(x, y, 0xFF000000 | (r<<16) | (g<<8) | b);
+            }
+        }
+        return img;
+    }
+
+    private static int clamp(int v) { return Math.max(0, Math.min(255, v)); }
+}
@@ -0,0 +1,59 @@
+package cl.proyecto.morfologia.bench;
+
+import cl.proyecto.morfologia.core.Engines;
+import cl.proyecto.morfologia.core.MorphologySimd;
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH del modo simd, con los mismos parámetros que {@link MorphologyBench}
+ * (salvo hilos y motor).
+ *
+ * Es el único cuyos forks cargan jdk.incubator.vector (y muestran su aviso de módulo
+ * incubador). Con el perfil vector mide los kernels vectoriales; sin él, la alternativa
+ * escalar. El setup imprime el backend usado.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules=jdk.incubator.vector"})
+public class MorphologySimdBench {
+
+    @Param({"512", "2048"})
+    public int size;
+
+    @Param({"1", "5"})
+    public String se;
+
+    @Param({"erosion"})
+    public String op;
+
+    @Param({"ignore"})
+    public String edge;
+
+    private BufferedImage img;
+    private boolean[][] seMask;
+    private Operation operation;
+    private EdgePolicy edgePolicy;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        img = MorphologyBench.synthetic(size, size, 42);
+        seMask = StructuringElement.parse(se);
+        operation = Operation.from(op);
+        edgePolicy = EdgePolicy.from(edge);
+        System.out.println("Backend SIMD: " + MorphologySimd.backend());
+    }
+
+    @Benchmark
+    public BufferedImage apply() throws Exception {
+        return Engines.apply(cl.proyecto.morfologia.model.Mode.SIMD, img, operation, seMask, edgePolicy, 1);
+    }
+}
@@ -0,0 +1,56 @@
+package cl.proyecto.morfologia.core;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Backend SIMD de {@link PlaneKernel} con jdk.incubator.vector.
+ *
+ * Solo se compila con el perfil Maven "vector" y se carga por reflexión desde
+ * {@link MorphologySimd}; requiere ejecutar con --add-modules jdk.incubator.vector.
+ */
+public final class VectorPlaneKernel implements PlaneKernel {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    @Override
+    public void apply(byte[] padded, int pw, byte[] dst, int w, int h, int rr, int rc,
+                      boolean isErosion, int[] dys, int[] dxs) {
+        final int n = dys.length;
+        final int[] deltas = new int[n];
+        for (int k=0;k<n;k++) deltas[k] = dys[k]*pw + dxs[k];
+        final byte neutral = (byte) ((isErosion ? 255 : 0) ^ 0x80);
+        final int lanes = SPECIES.length();
+        final int bound = w - w % lanes;
+        final ByteVector init = ByteVector.broadcast(SPECIES, neutral);
+
+        for (int y=0;y<h;y++){
+            int base = (y+rr)*pw + rc, o = y*w;
+            int x = 0;
+            // Segmentos completos: una carga por posición del SE y min/max por carril
+            for (; x<bound; x+=lanes){
+                ByteVector acc = init;
+                int p0 = base + x;
+                if (isErosion) {
+                    for (int k=0;k<n;k++) acc = acc.min(ByteVector.fromArray(SPECIES, padded, p0 + deltas[k]));
+                } else {
+                    for (int k=0;k<n;k++) acc = acc.max(ByteVector.fromArray(SPECIES, padded, p0 + deltas[k]));
+                }
+                acc.lanewise(VectorOperators.XOR, (byte) 0x80).intoArray(dst, o + x);
+            }
+            // Cola escalar
+            for (; x<w; x++){
+                int acc = neutral, p0 = base + x;
+                if (isErosion) for (int k=0;k<n;k++) acc = Math.min(acc, padded[p0 + deltas[k]]);
+                else for (int k=0;k<n;k++) acc = Math.max(acc, padded[p0 + deltas[k]]);
+                dst[o + x] = (byte) (acc ^ 0x80);
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vector(" + SPECIES.vectorBitSize() + " bits, " + SPECIES.length() + " carriles)";
+    }
+}
@@ -0,0 +1,104 @@
+package cl.proyecto.morfologia.cluster;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lanza N procesos worker en esta máquina (una JVM cada uno, mismo classpath), para
+ * usar o probar el modo distribuido sin otros nodos. Al cerrar se terminan los procesos.
+ */
+public final class LocalWorkers implements AutoCloseable {
+
+    /** Línea que imprime el worker al quedar escuchando: "Worker en host:puerto ...". */
+    private static final Pattern READY = Pattern.compile("^Worker en ([^\\s]+):(\\d+)");
+
+    private final List<Process> processes = new ArrayList<>();
+    private final List<InetSocketAddress> addresses = new ArrayList<>();
+
+    private LocalWorkers() {}
+
+    /**
+     * @param extraArgs argumentos adicionales para cada worker (p. ej. --delay-ms 50)
+     */
+    public static LocalWorkers spawn(int n, List<String> extraArgs) throws IOException {
+        if (n < 1) throw new IllegalArgumentException("Cantidad de workers inválida: " + n);
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        LocalWorkers lw = new LocalWorkers();
+        try {
+            for (int i=0;i<n;i++){
+                List<String> cmd = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path"),
+                        "cl.proyecto.morfologia.Main", "--worker", "--port", "0"));
+                cmd.addAll(extraArgs);
+                Process p = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+                lw.processes.add(p);
+            }
+            // Se lanzan todos antes de esperar: las JVM arrancan en paralelo
+            for (Process p : lw.processes) lw.addresses.add(awaitReady(p));
+            return lw;
+        } catch (IOException | RuntimeException e) {
+            lw.close();
+            throw e;
+        }
+    }
+
+    public List<InetSocketAddress> addresses() {
+        return List.copyOf(addresses);
+    }
+
+    /** Termina el worker i (para probar la reasignación de tiles). */
+    public void kill(int i) {
+        processes.get(i).destroyForcibly();
+    }
+
+    @Override
+    public void close() {
+        for (Process p : processes) p.destroy();
+        for (Process p : processes) {
+            try {
+                p.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                p.destroyForcibly();
+            }
+        }
+    }
+
+    private static InetSocketAddress awaitReady(Process p) throws IOException {
+        BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = r.readLine()) != null) {
+            Matcher m = READY.matcher(line);
+            if (m.find()) {
+                // El resto de la salida se descarta para que el worker no se bloquee escribiendo
+                Thread drain = new Thread(() -> {
+                    try {
+                        while (r.readLine() != null) { /* descartar */ }
+                    } catch (IOException ignored) {
+                        // el proceso terminó
+                    }
+                }, "local-worker-out");
+                drain.setDaemon(true);
+                drain.start();
+                return new InetSocketAddress(m.group(1), Integer.parseInt(m.group(2)));
+            }
+        }
+        throw new IOException("El worker terminó antes de quedar listo (código " + waitExit(p) + ")");
+    }
+
+    private static int waitExit(Process p) {
+        try {
+            return p.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+}
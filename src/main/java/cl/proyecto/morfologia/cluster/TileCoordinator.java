@@ -0,0 +1,339 @@
+package cl.proyecto.morfologia.cluster;
+
+import cl.proyecto.morfologia.core.PlaneBands;
+import cl.proyecto.morfologia.metrics.Metrics;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.util.ImageIOUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Coordinador del modo distribuido: reparte la imagen en tiles con halo entre varios
+ * procesos {@link TileWorker} y arma el resultado.
+ *
+ * - Los tiles son las bandas con halo de {@link PlaneBands}, igual que en el motor
+ *   asíncrono; el worker las calcula con los mismos kernels.
+ * - Cada worker recibe {@link Config#slots()} conexiones; cada conexión pide un tile a la
+ *   cola común, lo envía y espera el resultado.
+ * - Si un worker falla (conexión cortada o sin respuesta en timeoutMs) se da por perdido
+ *   y sus tiles vuelven al frente de la cola.
+ * - Cuando la cola se vacía, las conexiones libres repiten los tiles que llevan más de
+ *   slowFactor veces el tiempo medio de un tile; se usa el primer resultado que llegue.
+ *
+ * Imágenes TYPE_BYTE_GRAY viajan y vuelven en un canal; el resto en R, G y B.
+ */
+public final class TileCoordinator {
+
+    /** Un tile no se considera lento antes de este tiempo, aunque los demás sean más rápidos. */
+    private static final long MIN_SLOW_NANOS = 200_000_000L;
+
+    /**
+     * Configuración del coordinador.
+     *
+     * @param workers    direcciones de los workers
+     * @param slots      conexiones (tiles en vuelo) por worker
+     * @param tileRows   filas por tile sin halo (0 = automático)
+     * @param timeoutMs  espera máxima por la respuesta de un tile antes de dar el worker por perdido
+     * @param slowFactor un tile se repite en otro worker si tarda más que slowFactor veces el promedio
+     */
+    public record Config(List<InetSocketAddress> workers, int slots, int tileRows, long timeoutMs, double slowFactor) {
+        public Config {
+            if (workers.isEmpty()) throw new IllegalArgumentException("Se requiere al menos un worker");
+            if (slots < 1) throw new IllegalArgumentException("Conexiones por worker inválidas: " + slots);
+            if (tileRows < 0) throw new IllegalArgumentException("Filas por tile inválidas: " + tileRows);
+            if (timeoutMs <= 0) throw new IllegalArgumentException("Timeout inválido: " + timeoutMs);
+            if (slowFactor <= 1) throw new IllegalArgumentException("El factor de lentitud debe ser mayor que 1: " + slowFactor);
+            workers = List.copyOf(workers);
+        }
+    }
+
+    /**
+     * Resultado de una ejecución.
+     *
+     * @param reassigned  tiles que volvieron a la cola porque su worker falló
+     * @param speculative tiles repetidos en otro worker por lentos
+     * @param lostWorkers workers dados por perdidos (dirección y motivo)
+     */
+    public record Result(BufferedImage image, int tiles, int reassigned, int speculative, List<String> lostWorkers) {}
+
+    /**
+     * Lee la lista de workers "host:puerto,host:puerto,...".
+     */
+    public static List<InetSocketAddress> parseWorkers(String spec) {
+        List<InetSocketAddress> out = new ArrayList<>();
+        for (String s : spec.split(",")) {
+            s = s.trim();
+            int i = s.lastIndexOf(':');
+            if (i <= 0 || i == s.length() - 1) throw new IllegalArgumentException("Worker inválido (host:puerto): " + s);
+            int port;
+            try {
+                port = Integer.parseInt(s.substring(i + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Puerto inválido: " + s);
+            }
+            out.add(new InetSocketAddress(s.substring(0, i), port));
+        }
+        return out;
+    }
+
+    public static Result apply(BufferedImage img, Operation op, boolean[][] se, Config c) throws IOException {
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+        int w = img.getWidth(), h = img.getHeight();
+        boolean gray = img.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        byte[][] planes;
+        if (gray) {
+            planes = new byte[1][w*h];
+            img.getRaster().getDataElements(0, 0, w, h, planes[0]);
+        } else {
+            planes = new byte[3][w*h];
+            ImageIOUtils.splitPlanes(ImageIOUtils.argbPixels(img), planes[0], planes[1], planes[2]);
+        }
+
+        int margin = PlaneBands.margin(op, se);
+        // Cada conexión es un ejecutor
+        int rows = c.tileRows() > 0 ? Math.min(h, c.tileRows())
+                : PlaneBands.rows(h, margin, c.workers().size() * c.slots());
+        List<Tile> tiles = new ArrayList<>();
+        for (PlaneBands.Band b : PlaneBands.split(h, rows, margin)) tiles.add(new Tile(tiles.size(), b));
+
+        Job job = new Job(tiles, planes, w, op, se, c);
+        List<Thread> threads = new ArrayList<>();
+        for (InetSocketAddress addr : c.workers()) {
+            Worker wk = new Worker(addr);
+            for (int s=0;s<c.slots();s++){
+                Thread t = new Thread(() -> job.slot(wk), "cluster-" + addr.getPort() + "-" + s);
+                t.setDaemon(true);
+                threads.add(t);
+            }
+        }
+        job.liveSlots = threads.size();
+        threads.forEach(Thread::start);
+        try {
+            job.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Coordinación interrumpida");
+        } finally {
+            // Corta las conexiones que siguen esperando tiles repetidos
+            job.closeAll();
+        }
+
+        BufferedImage out;
+        if (gray) {
+            out = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+            System.arraycopy(job.out[0], 0, ((DataBufferByte) out.getRaster().getDataBuffer()).getData(), 0, w*h);
+        } else {
+            out = ImageIOUtils.mergePlanes(job.out[0], job.out[1], job.out[2], w, h);
+        }
+        Metrics.stage("cluster.compute", t0, (long) planes.length * w * h, a0);
+        return new Result(out, tiles.size(), job.reassigned, job.speculative, List.copyOf(job.lost));
+    }
+
+    /** Banda [y0, y1) con halo [top, bot). */
+    private static final class Tile {
+        final int id, y0, y1, top, bot;
+        int running;
+        boolean done;
+        long started;
+        Worker owner;
+
+        Tile(int id, PlaneBands.Band b) {
+            this.id = id; this.y0 = b.y0(); this.y1 = b.y1();
+            this.top = b.top(); this.bot = b.bot();
+        }
+    }
+
+    private static final class Worker {
+        final InetSocketAddress addr;
+        volatile boolean lost;
+
+        Worker(InetSocketAddress addr) {
+            this.addr = addr;
+        }
+    }
+
+    /**
+     * Estado compartido de una ejecución; todo se sincroniza sobre el propio objeto.
+     */
+    private static final class Job {
+        final List<Tile> tiles;
+        final Deque<Tile> pending;
+        final byte[][] planes, out;
+        final int w;
+        final Operation op;
+        final boolean[][] se;
+        final Config c;
+        final List<String> lost = new ArrayList<>();
+        final List<Socket> sockets = Collections.synchronizedList(new ArrayList<>());
+        int remaining, liveSlots, reassigned, speculative, doneCount;
+        long doneNanos;
+        IOException fatal;
+
+        Job(List<Tile> tiles, byte[][] planes, int w, Operation op, boolean[][] se, Config c) {
+            this.tiles = tiles;
+            this.pending = new ArrayDeque<>(tiles);
+            this.planes = planes;
+            this.out = new byte[planes.length][planes[0].length];
+            this.w = w;
+            this.op = op;
+            this.se = se;
+            this.c = c;
+            this.remaining = tiles.size();
+        }
+
+        /** Una conexión con un worker: pide tiles hasta que no queden o el worker falle. */
+        void slot(Worker wk) {
+            Socket s = new Socket();
+            sockets.add(s);
+            try {
+                s.connect(wk.addr, (int) Math.min(c.timeoutMs(), 10_000));
+                s.setSoTimeout((int) Math.min(Integer.MAX_VALUE, c.timeoutMs()));
+                s.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16));
+                DataOutputStream os = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 1 << 16));
+                Tile t;
+                while ((t = take(wk)) != null) {
+                    long st = System.nanoTime();
+                    byte[] res;
+                    try {
+                        TileProtocol.writeRequest(os, request(t));
+                        res = TileProtocol.readResult(in, t.id, planes.length * (t.y1 - t.y0) * w);
+                    } catch (TileProtocol.RemoteError e) {
+                        throw e;
+                    } catch (IOException e) {
+                        // Primero se marca el worker, para que sus otras conexiones no tomen el tile devuelto
+                        lose(wk, e);
+                        failed(t);
+                        throw e;
+                    }
+                    done(t, res, System.nanoTime() - st);
+                }
+            } catch (TileProtocol.RemoteError e) {
+                fail(new IOException("Worker " + wk.addr + ": " + e.getMessage()));
+            } catch (IOException e) {
+                lose(wk, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    s.close();
+                } catch (IOException ignored) {
+                    // ya cerrada
+                }
+                slotExit();
+            }
+        }
+
+        TileProtocol.Request request(Tile t) {
+            int rows = t.bot - t.top, plane = rows * w;
+            byte[] data = new byte[planes.length * plane];
+            for (int ch=0; ch<planes.length; ch++) System.arraycopy(planes[ch], t.top * w, data, ch * plane, plane);
+            return new TileProtocol.Request(t.id, op, se, w, rows, t.y0 - t.top, t.y1 - t.y0, planes.length, data);
+        }
+
+        /** Siguiente tile para wk: de la cola o, si está vacía, uno lento de otro worker. */
+        synchronized Tile take(Worker wk) throws InterruptedException {
+            while (remaining > 0 && fatal == null && !wk.lost) {
+                long now = System.nanoTime();
+                Tile t = pending.poll();
+                if (t == null) {
+                    t = slowest(wk, now);
+                    if (t != null) speculative++;
+                } else {
+                    t.started = now;
+                    t.owner = wk;
+                }
+                if (t != null) {
+                    t.running++;
+                    return t;
+                }
+                wait(20);
+            }
+            return null;
+        }
+
+        private Tile slowest(Worker wk, long now) {
+            if (doneCount == 0) return null;
+            long limit = Math.max(MIN_SLOW_NANOS, (long) (c.slowFactor() * doneNanos / doneCount));
+            Tile best = null;
+            for (Tile t : tiles) {
+                if (t.done || t.running != 1 || t.owner == wk || now - t.started < limit) continue;
+                if (best == null || t.started < best.started) best = t;
+            }
+            return best;
+        }
+
+        synchronized void done(Tile t, byte[] res, long nanos) {
+            t.running--;
+            if (t.done) return; // llegó antes la otra copia
+            int inner = (t.y1 - t.y0) * w;
+            for (int ch=0; ch<out.length; ch++) System.arraycopy(res, ch * inner, out[ch], t.y0 * w, inner);
+            t.done = true;
+            remaining--;
+            doneNanos += nanos;
+            doneCount++;
+            notifyAll();
+        }
+
+        synchronized void failed(Tile t) {
+            t.running--;
+            if (!t.done && t.running == 0 && fatal == null && remaining > 0) {
+                pending.addFirst(t);
+                reassigned++;
+            }
+            notifyAll();
+        }
+
+        synchronized void lose(Worker wk, IOException e) {
+            if (remaining == 0 || wk.lost) return; // cierre normal al terminar
+            wk.lost = true;
+            lost.add(wk.addr + " (" + (e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage()) + ")");
+            notifyAll();
+        }
+
+        synchronized void fail(IOException e) {
+            if (fatal == null) fatal = e;
+            notifyAll();
+        }
+
+        synchronized void slotExit() {
+            liveSlots--;
+            if (liveSlots == 0 && remaining > 0 && fatal == null) {
+                fatal = new IOException("No quedan workers disponibles; tiles pendientes: " + remaining
+                        + (lost.isEmpty() ? "" : " | perdidos: " + lost));
+            }
+            notifyAll();
+        }
+
+        synchronized void await() throws IOException, InterruptedException {
+            while (remaining > 0 && fatal == null) wait();
+            if (fatal != null) throw fatal;
+        }
+
+        void closeAll() {
+            synchronized (sockets) {
+                for (Socket s : sockets) {
+                    try {
+                        s.close();
+                    } catch (IOException ignored) {
+                        // ya cerrada
+                    }
+                }
+            }
+        }
+    }
+}
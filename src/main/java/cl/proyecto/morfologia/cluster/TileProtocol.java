@@ -0,0 +1,114 @@
+package cl.proyecto.morfologia.cluster;
+
+import cl.proyecto.morfologia.model.Operation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Formato de los mensajes entre coordinador y workers (big-endian, sobre TCP).
+ *
+ * Petición: MAGIC, id del tile, operación (UTF), alto y ancho del SE y su máscara (un
+ * byte por celda), ancho, filas del tile con halo, primera fila interior, filas
+ * interiores, canales y luego los planos (canal por canal, fila por fila, un byte por
+ * muestra).
+ *
+ * Respuesta: MAGIC, id del tile, estado (OK o ERROR) y las filas interiores de cada
+ * canal, o el mensaje de error (UTF).
+ *
+ * Una conexión transporta muchas peticiones una tras otra.
+ */
+final class TileProtocol {
+
+    static final int MAGIC = 0x4D545731; // "MTW1"
+    static final byte OK = 0, ERROR = 1;
+
+    private TileProtocol() {}
+
+    /**
+     * Tile con halo: filas [top, top + inner) de data son las que se devuelven.
+     */
+    record Request(int id, Operation op, boolean[][] se, int width, int rows, int top, int inner, int channels,
+                   byte[] data) {}
+
+    static void writeRequest(DataOutputStream out, Request r) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(r.id());
+        out.writeUTF(r.op().id());
+        out.writeInt(r.se().length);
+        out.writeInt(r.se()[0].length);
+        for (boolean[] row : r.se()) for (boolean b : row) out.writeByte(b ? 1 : 0);
+        out.writeInt(r.width());
+        out.writeInt(r.rows());
+        out.writeInt(r.top());
+        out.writeInt(r.inner());
+        out.writeInt(r.channels());
+        out.write(r.data());
+        out.flush();
+    }
+
+    static Request readRequest(DataInputStream in) throws IOException {
+        checkMagic(in.readInt());
+        int id = in.readInt();
+        Operation op = Operation.from(in.readUTF());
+        int sh = in.readInt(), sw = in.readInt();
+        if (sh <= 0 || sw <= 0 || (long) sh * sw > 1 << 20) throw new IOException("SE inválido: " + sh + "x" + sw);
+        boolean[][] se = new boolean[sh][sw];
+        for (boolean[] row : se) for (int x=0;x<sw;x++) row[x] = in.readByte() != 0;
+        int w = in.readInt(), rows = in.readInt(), top = in.readInt(), inner = in.readInt(), channels = in.readInt();
+        if (w <= 0 || rows <= 0 || top < 0 || inner <= 0 || top + inner > rows || channels < 1 || channels > 3
+                || (long) channels * rows * w > Integer.MAX_VALUE) {
+            throw new IOException("Tile inválido: " + w + "x" + rows + " canales=" + channels);
+        }
+        byte[] data = new byte[channels * rows * w];
+        in.readFully(data);
+        return new Request(id, op, se, w, rows, top, inner, channels, data);
+    }
+
+    static void writeResult(DataOutputStream out, int id, byte[] data) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(id);
+        out.writeByte(OK);
+        out.write(data);
+        out.flush();
+    }
+
+    static void writeError(DataOutputStream out, int id, String message) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(id);
+        out.writeByte(ERROR);
+        out.writeUTF(String.valueOf(message));
+        out.flush();
+    }
+
+    /**
+     * Lee la respuesta del tile id (bytes esperados: canales * filas interiores * ancho).
+     *
+     * @throws RemoteError si el worker informó un error de cálculo
+     */
+    static byte[] readResult(DataInputStream in, int id, int bytes) throws IOException {
+        checkMagic(in.readInt());
+        int got = in.readInt();
+        if (got != id) throw new IOException("Respuesta de otro tile: " + got + " (esperado " + id + ")");
+        byte status = in.readByte();
+        if (status == ERROR) throw new RemoteError(in.readUTF());
+        if (status != OK) throw new IOException("Estado desconocido: " + status);
+        byte[] data = new byte[bytes];
+        in.readFully(data);
+        return data;
+    }
+
+    private static void checkMagic(int m) throws IOException {
+        if (m != MAGIC) throw new IOException("Mensaje inválido (falta MTW1)");
+    }
+
+    /** Error informado por el worker: repetir el tile en otro worker no ayudaría. */
+    static final class RemoteError extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        RemoteError(String message) {
+            super(message);
+        }
+    }
+}
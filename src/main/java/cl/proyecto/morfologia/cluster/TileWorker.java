@@ -0,0 +1,139 @@
+package cl.proyecto.morfologia.cluster;
+
+import cl.proyecto.morfologia.core.PlaneBands;
+import cl.proyecto.morfologia.metrics.Metrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Worker del modo distribuido: recibe tiles con halo por TCP, los calcula y devuelve
+ * sus filas interiores (ver {@link TileProtocol}).
+ *
+ * - Cada conexión se atiende en su propio hilo; el coordinador abre varias por worker
+ *   para que este calcule varios tiles a la vez.
+ * - Los tiles se calculan canal por canal con {@link PlaneBands}.
+ * - El worker no guarda estado entre tiles: si se cae, el coordinador reasigna sus
+ *   tiles a otro.
+ */
+public final class TileWorker implements AutoCloseable {
+
+    private final ServerSocket server;
+    private final ExecutorService connections;
+    private final long delayMs;
+    private final AtomicLong tiles = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param bind    dirección en la que escuchar (null = solo 127.0.0.1)
+     * @param port    puerto (0 = uno libre)
+     * @param delayMs espera artificial antes de responder cada tile (para probar la reasignación)
+     */
+    public TileWorker(InetAddress bind, int port, long delayMs) throws IOException {
+        this.server = new ServerSocket();
+        server.bind(new InetSocketAddress(bind == null ? InetAddress.getLoopbackAddress() : bind, port));
+        this.delayMs = delayMs;
+        this.connections = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "tile-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Empieza a aceptar conexiones en un hilo propio. */
+    public void start() {
+        Thread accept = new Thread(this::acceptLoop, "tile-worker-accept");
+        accept.setDaemon(true);
+        accept.start();
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    public long tiles() {
+        return tiles.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException ignored) {
+            // ya cerrado
+        }
+        connections.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket s = server.accept();
+                s.setTcpNoDelay(true);
+                connections.execute(() -> serve(s));
+            } catch (IOException e) {
+                if (!closed) System.err.println("Worker: error aceptando conexión: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket s) {
+        try (s;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 1 << 16))) {
+            while (!closed) {
+                TileProtocol.Request r;
+                try {
+                    r = TileProtocol.readRequest(in);
+                } catch (EOFException e) {
+                    return; // el coordinador cerró la conexión
+                }
+                byte[] res;
+                try {
+                    res = compute(r);
+                } catch (RuntimeException e) {
+                    TileProtocol.writeError(out, r.id(), e.toString());
+                    continue;
+                }
+                if (delayMs > 0) Thread.sleep(delayMs);
+                TileProtocol.writeResult(out, r.id(), res);
+                tiles.incrementAndGet();
+            }
+        } catch (SocketException e) {
+            // conexión cortada por el coordinador
+        } catch (IOException e) {
+            if (!closed) System.err.println("Worker: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Calcula cada canal del tile y devuelve sus filas interiores, canal tras canal. */
+    static byte[] compute(TileProtocol.Request r) {
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+        int w = r.width(), plane = r.rows() * w, inner = r.inner() * w;
+        // Solo importan las filas relativas: la banda empieza en la fila 0 del tile
+        PlaneBands.Band b = new PlaneBands.Band(r.top(), r.top() + r.inner(), 0, r.rows());
+        byte[] out = new byte[r.channels() * inner];
+        for (int c=0;c<r.channels();c++){
+            byte[] src = new byte[plane];
+            System.arraycopy(r.data(), c * plane, src, 0, plane);
+            PlaneBands.compute(src, w, b, r.op(), r.se(), out, c * inner);
+        }
+        Metrics.stage("cluster.tile", t0, (long) r.channels() * inner, a0);
+        return out;
+    }
+}
@@ -0,0 +1,216 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Mode;
+import cl.proyecto.morfologia.model.Operation;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Autoajuste: elige motor, hilos y geometría de tiles para esta máquina.
+ *
+ * - La calibración mide cada candidato sobre un recorte central de la imagen real
+ *   (hasta {@link #SAMPLE} x {@link #SAMPLE}): una corrida de calentamiento y el mínimo
+ *   de {@link #RUNS} corridas, dentro de un presupuesto de tiempo total.
+ * - Candidatos: seq, fused, packed, simd (si hay backend vectorial) y, con varios
+ *   núcleos, par, fused-par y engine con 1/2, 3/4 y todos los núcleos; engine además con
+ *   varias geometrías fijas de tiles. Para las rutas rápidas (gris, binaria) los modos de
+ *   un hilo son equivalentes entre sí, igual que los paralelos: se mide seq y engine con
+ *   cada número de hilos, sobre un recorte del mismo tipo que la imagen.
+ * - Los candidatos que usan el pool del motor (engine y las compuestas fusionadas en
+ *   paralelo) se miden en motores privados que se cierran al terminar; solo el perfil
+ *   ganador toca el motor compartido ({@link Profile#install()}).
+ * - El perfil elegido se guarda en un archivo Properties por clave (núcleos, tamaño de
+ *   imagen en potencias de 2, costo del SE, tipo de operación y ruta rápida); las siguientes corridas
+ *   con la misma clave lo usan sin calibrar.
+ */
+public final class AutoTuner {
+
+    public static final int SAMPLE = 768;
+    public static final int RUNS = 2;
+    /** Presupuesto de la calibración; al superarlo se descartan los candidatos restantes. */
+    public static final long BUDGET_MS = 4000;
+
+    /**
+     * Perfil elegido. tileH = tileW = 0 significa geometría adaptativa (solo engine).
+     *
+     * @param ms tiempo medido en la calibración sobre el recorte (0 si vino del archivo)
+     */
+    public record Profile(Mode mode, int threads, int tileH, int tileW, double ms) {
+        public String describe() {
+            String tiles = mode == Mode.ENGINE ? (tileH == 0 ? " | tiles=adaptativos" : " | tiles=" + tileH + "x" + tileW) : "";
+            return "modo=" + mode.id() + " | hilos=" + threads + tiles;
+        }
+
+        /** Aplica la geometría de tiles al motor compartido (solo engine). */
+        public void install() {
+            if (mode == Mode.ENGINE) MorphologyEngine.shared(threads).setTileGeometry(geometry());
+        }
+
+        /** Geometría fija de tiles, o null si es adaptativa. */
+        MorphologyEngine.TileGeometry geometry() {
+            return tileH == 0 ? null : new MorphologyEngine.TileGeometry(tileH, tileW);
+        }
+
+        String encode() {
+            return mode.id() + "," + threads + "," + tileH + "," + tileW;
+        }
+
+        static Profile decode(String s) {
+            String[] p = s.split(",");
+            if (p.length != 4) throw new IllegalArgumentException("Perfil inválido: " + s);
+            return new Profile(Mode.from(p[0]), Integer.parseInt(p[1].trim()), Integer.parseInt(p[2].trim()),
+                    Integer.parseInt(p[3].trim()), 0);
+        }
+    }
+
+    /** Archivo de perfiles por defecto: ~/.morfologia/autotune.properties */
+    public static Path defaultFile() {
+        return Path.of(System.getProperty("user.home"), ".morfologia", "autotune.properties");
+    }
+
+    /**
+     * Clave del perfil: núcleos, píxeles (redondeados a potencia de 2), costo del SE según
+     * {@link SePlanner}, si la operación es compuesta y la ruta rápida, si la hay.
+     */
+    public static String key(BufferedImage img, Operation op, boolean[][] se) {
+        long px = Math.max(1, (long) img.getWidth() * img.getHeight());
+        int log2 = 63 - Long.numberOfLeadingZeros(px);
+        double cost = SePlanner.planCached(se).cost();
+        int costBucket = 31 - Integer.numberOfLeadingZeros(Math.max(1, (int) Math.round(cost)));
+        String fast = Engines.fastPath(img);
+        return String.format(Locale.ROOT, "cpus%d.px2^%d.se2^%d.%s%s", Runtime.getRuntime().availableProcessors(),
+                log2, costBucket, op.isComposite() ? "compuesta" : "simple", fast == null ? "" : "." + fast);
+    }
+
+    /**
+     * Devuelve el perfil guardado para esta imagen y SE, o calibra y lo guarda si no existe
+     * (o si recalibrate es true).
+     */
+    public static Profile choose(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy,
+                                 Path file, boolean recalibrate) throws Exception {
+        String key = key(img, op, se);
+        Properties props = load(file);
+        String saved = props.getProperty(key);
+        if (saved != null && !recalibrate) return Profile.decode(saved);
+        Profile p = calibrate(img, op, se, edgePolicy);
+        props.setProperty(key, p.encode());
+        save(props, file);
+        return p;
+    }
+
+    /**
+     * Mide los candidatos sobre un recorte de la imagen y devuelve el más rápido.
+     */
+    public static Profile calibrate(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy)
+            throws Exception {
+        BufferedImage sample = sample(img);
+        long deadline = System.nanoTime() + BUDGET_MS * 1_000_000L;
+        Profile best = null;
+        // Un motor privado por número de hilos: no quedan pools vivos ni se altera el compartido
+        Map<Integer, MorphologyEngine> engines = new HashMap<>();
+        try {
+            for (Profile c : candidates(img, se)) {
+                if (best != null && System.nanoTime() > deadline) break;
+                MorphologyEngine engine = engines.computeIfAbsent(c.threads(), MorphologyEngine::new);
+                engine.setTileGeometry(c.geometry());
+                Engines.apply(c.mode(), sample, op, se, edgePolicy, c.threads(), engine);
+                double ms = Double.MAX_VALUE;
+                for (int r=0;r<RUNS;r++){
+                    long t0 = System.nanoTime();
+                    Engines.apply(c.mode(), sample, op, se, edgePolicy, c.threads(), engine);
+                    ms = Math.min(ms, (System.nanoTime() - t0) / 1e6);
+                }
+                if (best == null || ms < best.ms()) best = new Profile(c.mode(), c.threads(), c.tileH(), c.tileW(), ms);
+            }
+        } finally {
+            for (MorphologyEngine e : engines.values()) e.close();
+        }
+        // Deja el motor compartido con la geometría del perfil ganador
+        best.install();
+        return best;
+    }
+
+    /** Candidatos a medir, los más probables primero (por si se agota el presupuesto). */
+    static List<Profile> candidates(BufferedImage img, boolean[][] se) {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        List<Profile> out = new ArrayList<>();
+        Set<Integer> threads = new LinkedHashSet<>(List.of(cpus, Math.max(1, cpus * 3 / 4), Math.max(1, cpus / 2)));
+        if (Engines.fastPath(img) != null) {
+            if (cpus > 1) for (int t : threads) out.add(new Profile(Mode.ENGINE, t, 0, 0, 0));
+            out.add(new Profile(Mode.SEQ, 1, 0, 0, 0));
+            return out;
+        }
+        if (cpus > 1) {
+            for (int t : threads) {
+                out.add(new Profile(Mode.ENGINE, t, 0, 0, 0));
+                out.add(new Profile(Mode.FUSED_PAR, t, 0, 0, 0));
+                out.add(new Profile(Mode.PAR, t, 0, 0, 0));
+            }
+            int rows = Math.max(8, 2 * se.length);
+            int w = Math.min(img.getWidth(), SAMPLE);
+            for (int[] g : new int[][]{{rows, w}, {64, 256}, {128, 512}, {32, 1024}}) {
+                out.add(new Profile(Mode.ENGINE, cpus, Math.max(g[0], rows), Math.min(g[1], w), 0));
+            }
+        }
+        out.add(new Profile(Mode.FUSED, 1, 0, 0, 0));
+        out.add(new Profile(Mode.SEQ, 1, 0, 0, 0));
+        out.add(new Profile(Mode.PACKED, 1, 0, 0, 0));
+        if (MorphologySimd.backend().startsWith("vector")) out.add(new Profile(Mode.SIMD, 1, 0, 0, 0));
+        return out;
+    }
+
+    /**
+     * Recorte central de hasta SAMPLE x SAMPLE: del mismo tipo si la imagen va por una ruta
+     * rápida, si no en ARGB compacto.
+     */
+    static BufferedImage sample(BufferedImage img) {
+        int w = Math.min(SAMPLE, img.getWidth()), h = Math.min(SAMPLE, img.getHeight());
+        int x0 = (img.getWidth() - w) / 2, y0 = (img.getHeight() - h) / 2;
+        if (Engines.fastPath(img) != null) {
+            ColorModel cm = img.getColorModel();
+            WritableRaster r = img.getRaster().createCompatibleWritableRaster(w, h);
+            r.setDataElements(0, 0, img.getRaster().createChild(x0, y0, w, h, 0, 0, null));
+            return new BufferedImage(cm, r, cm.isAlphaPremultiplied(), null);
+        }
+        BufferedImage crop = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        int[] row = new int[w];
+        for (int y=0;y<h;y++){
+            img.getRGB(x0, y0 + y, w, 1, row, 0, w);
+            crop.setRGB(0, y, w, 1, row, 0, w);
+        }
+        return crop;
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties p = new Properties();
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                p.load(in);
+            }
+        }
+        return p;
+    }
+
+    private static void save(Properties p, Path file) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        try (OutputStream out = Files.newOutputStream(file)) {
+            p.store(out, "Perfiles de autoajuste (modo,hilos,altoTile,anchoTile)");
+        }
+    }
+}
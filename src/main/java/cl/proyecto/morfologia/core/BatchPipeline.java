@@ -0,0 +1,171 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Mode;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.util.ImageIOUtils;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Procesamiento por lotes de un directorio con tres etapas encadenadas:
+ *
+ * - Decodificación: ioThreads hilos leen PNG en paralelo.
+ * - Cálculo: un hilo toma las imágenes decodificadas y aplica el motor elegido
+ *   (que a su vez usa sus propios hilos).
+ * - Codificación: ioThreads hilos escriben los PNG resultantes en paralelo.
+ *
+ * Las etapas se comunican con colas acotadas: si el cálculo se atrasa, los lectores se
+ * bloquean (backpressure), así que la memoria queda limitada a unas pocas imágenes.
+ * Una imagen que falla se informa y el lote continúa.
+ */
+public final class BatchPipeline {
+
+    /**
+     * Parámetros del lote.
+     *
+     * @param ioThreads hilos de lectura y también de escritura
+     * @param queue     capacidad de cada cola entre etapas (imágenes)
+     */
+    public record Config(Mode mode, Operation op, boolean[][] se, EdgePolicy edgePolicy, int threads,
+                         int ioThreads, int queue) {
+        public Config {
+            if (ioThreads <= 0) throw new IllegalArgumentException("io-threads debe ser positivo: " + ioThreads);
+            if (queue <= 0) throw new IllegalArgumentException("queue debe ser positivo: " + queue);
+        }
+    }
+
+    /**
+     * Resumen del lote. Los tiempos por etapa son la suma sobre todas las imágenes.
+     */
+    public record Report(int images, int failed, long pixels, double seconds,
+                         double decodeMs, double computeMs, double encodeMs) {
+        public double imagesPerSecond() { return seconds > 0 ? images / seconds : 0; }
+        public double megapixelsPerSecond() { return seconds > 0 ? pixels / 1e6 / seconds : 0; }
+    }
+
+    /** Imagen en tránsito entre etapas; in == null marca el fin. */
+    private record Item(Path in, Path out, BufferedImage img) {}
+
+    private static final Item END = new Item(null, null, null);
+
+    public static Report run(Path inDir, Path outDir, Config c) throws IOException, InterruptedException {
+        List<Path> files = list(inDir);
+        Files.createDirectories(outDir);
+
+        BlockingQueue<Item> decoded = new ArrayBlockingQueue<>(c.queue());
+        BlockingQueue<Item> computed = new ArrayBlockingQueue<>(c.queue());
+        AtomicInteger next = new AtomicInteger(), failed = new AtomicInteger(), done = new AtomicInteger();
+        LongAdder pixels = new LongAdder(), decodeNs = new LongAdder(), computeNs = new LongAdder(), encodeNs = new LongAdder();
+
+        ExecutorService readers = Executors.newFixedThreadPool(c.ioThreads());
+        ExecutorService writers = Executors.newFixedThreadPool(c.ioThreads());
+        long t0 = System.nanoTime();
+        try {
+            for (int i=0;i<c.ioThreads();i++){
+                readers.submit(() -> {
+                    try {
+                        for (int k; (k = next.getAndIncrement()) < files.size(); ) {
+                            Path in = files.get(k);
+                            long s = System.nanoTime();
+                            try {
+                                BufferedImage img = ImageIOUtils.readPngNative(in.toFile());
+                                decodeNs.add(System.nanoTime() - s);
+                                decoded.put(new Item(in, outDir.resolve(in.getFileName()), img));
+                            } catch (InterruptedException e) {
+                                throw e;
+                            } catch (Exception e) {
+                                fail(in, "lectura", e, failed);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        // El último lector en terminar cierra la cola
+                        if (done.incrementAndGet() == c.ioThreads()) putQuietly(decoded, END);
+                    }
+                    return null;
+                });
+            }
+            List<Future<?>> writes = new ArrayList<>();
+            for (int i=0;i<c.ioThreads();i++){
+                writes.add(writers.submit(() -> {
+                    for (Item it; (it = computed.take()) != END; ) {
+                        long s = System.nanoTime();
+                        try {
+                            ImageIOUtils.writePng(it.img(), it.out().toFile());
+                            encodeNs.add(System.nanoTime() - s);
+                        } catch (Exception e) {
+                            fail(it.in(), "escritura", e, failed);
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            // Etapa de cálculo en el hilo actual
+            for (Item it; (it = decoded.take()) != END; ) {
+                long s = System.nanoTime();
+                try {
+                    BufferedImage out = Engines.apply(c.mode(), it.img(), c.op(), c.se(), c.edgePolicy(), c.threads());
+                    computeNs.add(System.nanoTime() - s);
+                    pixels.add((long) out.getWidth() * out.getHeight());
+                    computed.put(new Item(it.in(), it.out(), out));
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    fail(it.in(), "cálculo", e, failed);
+                }
+            }
+            for (int i=0;i<c.ioThreads();i++) computed.put(END);
+            for (Future<?> f : writes) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Falló la etapa de escritura", e.getCause());
+                }
+            }
+        } finally {
+            readers.shutdownNow();
+            writers.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        int ok = files.size() - failed.get();
+        return new Report(ok, failed.get(), pixels.sum(), seconds,
+                decodeNs.sum() / 1e6, computeNs.sum() / 1e6, encodeNs.sum() / 1e6);
+    }
+
+    /** PNG del directorio (no recursivo), en orden alfabético. */
+    static List<Path> list(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) throw new IllegalArgumentException("No es un directorio: " + dir);
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> Files.isRegularFile(p)
+                            && p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".png"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static void fail(Path in, String stage, Exception e, AtomicInteger failed) {
+        failed.incrementAndGet();
+        System.err.println("ERROR (" + stage + ") " + in + ": " + e.getMessage());
+    }
+
+    private static void putQuietly(BlockingQueue<Item> q, Item it) {
+        try {
+            q.put(it);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
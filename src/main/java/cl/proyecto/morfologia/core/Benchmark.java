@@ -1,6 +1,7 @@
 package cl.proyecto.morfologia.core;
 
 import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Mode;
 import cl.proyecto.morfologia.model.Operation;
 import cl.proyecto.morfologia.util.Timer;
 
@@ -8,33 +9,25 @@ import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Medición rápida desde la CLI (--bench): 3 ejecuciones sin calentamiento.
+ * Para resultados publicables usar los benchmarks JMH del perfil Maven "jmh".
+ */
 public final class Benchmark {
 
     public record Result(BufferedImage result, double avgMs, double stdMs, int runs) {}
 
     private static final int RUNS = 3; 
 
-    public static Result runSequential(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edge) {
-        List<Double> times = new ArrayList<>(RUNS);
-        BufferedImage out = null;
-        for (int i=0;i<RUNS;i++){
-            Timer t = new Timer();
-            t.start();
-            out = Morphology.apply(img, op, se, edge);
-            double ms = t.ms();
-            times.add(ms);
-        }
-        return new Result(out, avg(times), std(times), RUNS);
-    }
-
-    public static Result runParallel(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edge, int threads) {
+    /** Mide el modo indicado (el mismo despacho que la CLI, ver {@link Engines}). */
+    public static Result run(Mode mode, BufferedImage img, Operation op, boolean[][] se, EdgePolicy edge, int threads) {
         List<Double> times = new ArrayList<>(RUNS);
         BufferedImage out = null;
         for (int i=0;i<RUNS;i++){
             Timer t = new Timer();
             t.start();
             try {
-                out = MorphologyParallel.apply(img, op, se, edge, threads);
+                out = Engines.apply(mode, img, op, se, edge, threads);
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
@@ -0,0 +1,29 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Operation;
+
+/**
+ * Estrategia de cálculo directo de erosión/dilatación sobre un canal int[][].
+ *
+ * La usan {@link Morphology} (canal completo) y {@link MorphologyParallel} (un tile
+ * por llamada, sobre su sub-bloque con halo o sobre el canal compartido).
+ */
+public interface ChannelKernel {
+
+    /**
+     * Calcula las filas [y0, y1) de out.
+     *
+     * @param src filas de entrada; la fila global gy está en src[gy - srcY0]
+     * @param srcY0 fila global de src[0]
+     * @param out salida con coordenadas globales (out[y] es la fila y)
+     * @param h alto total de la imagen (para decidir qué filas están fuera de rango)
+     */
+    void apply(int[][] src, int srcY0, int[][] out, int y0, int y1, int h);
+
+    /** Fabrica un kernel para una operación, política de borde y SE. */
+    @FunctionalInterface
+    interface Factory {
+        ChannelKernel create(Operation op, EdgePolicy edgePolicy, boolean[][] se);
+    }
+}
@@ -0,0 +1,240 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Operation;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Kernels directos especializados por Operación x Política de borde.
+ *
+ * - El SE se precompila a una lista plana de desplazamientos (dy, dx).
+ * - Cada combinación tiene su propia clase final, sin preguntar por la operación ni
+ *   por la política dentro de los bucles (sitios de llamada monomórficos para el JIT).
+ * - La región interior (todo el SE dentro de la imagen) se calcula sin chequeos de
+ *   borde, recorriendo un desplazamiento a la vez sobre la fila completa: el bucle
+ *   interno es un min/max elemento a elemento que el JIT puede desenrollar y vectorizar.
+ * - Solo el marco exterior (de ancho igual al radio del SE) usa chequeos de borde.
+ *
+ * La estrategia es intercambiable: -Dmorfologia.kernel=generic usa el recorrido
+ * original (con ramas), útil para comparar; también se puede fijar con {@link #setFactory}.
+ */
+public final class ChannelKernels {
+
+    /** Kernels especializados (por defecto). */
+    public static final ChannelKernel.Factory SPECIALIZED = ChannelKernels::specialized;
+
+    /** Recorrido original con ramas por píxel, envuelto como estrategia. */
+    public static final ChannelKernel.Factory GENERIC = (op, edgePolicy, se) -> new Generic(op, edgePolicy, se);
+
+    private static volatile ChannelKernel.Factory factory =
+            "generic".equals(System.getProperty("morfologia.kernel", "").toLowerCase(Locale.ROOT)) ? GENERIC : SPECIALIZED;
+
+    public static void setFactory(ChannelKernel.Factory f) { factory = f; }
+
+    public static ChannelKernel of(Operation op, EdgePolicy edgePolicy, boolean[][] se) {
+        return factory.create(op, edgePolicy, se);
+    }
+
+    private static ChannelKernel specialized(Operation op, EdgePolicy edgePolicy, boolean[][] se) {
+        MorphologyFused.CompiledSe cse = MorphologyFused.compile(se);
+        if (op == Operation.EROSION) {
+            return edgePolicy == EdgePolicy.PAD ? new ErosionPad(cse) : new ErosionIgnore(cse);
+        }
+        return edgePolicy == EdgePolicy.PAD ? new DilationPad(cse) : new DilationIgnore(cse);
+    }
+
+    // ------------------------------------------------------------------ kernels
+
+    /** Erosión, IGNORE: fuera de la imagen se omite. */
+    static final class ErosionIgnore implements ChannelKernel {
+        private final MorphologyFused.CompiledSe cse;
+        ErosionIgnore(MorphologyFused.CompiledSe cse) { this.cse = cse; }
+
+        @Override
+        public void apply(int[][] src, int srcY0, int[][] out, int y0, int y1, int h) {
+            int w = out[0].length;
+            for (int y=y0; y<y1; y++){
+                int[] o = out[y];
+                int ix0 = interiorStart(cse, y, h, w), ix1 = interiorEnd(cse, y, h, w);
+                if (ix0 < ix1) erodeInterior(src, srcY0, o, y, ix0, ix1, cse);
+                for (int x=0; x<Math.min(ix0, w); x++) o[x] = erodeAtIgnore(src, srcY0, y, x, h, w, cse);
+                for (int x=Math.max(ix1, ix0); x<w; x++) o[x] = erodeAtIgnore(src, srcY0, y, x, h, w, cse);
+            }
+        }
+    }
+
+    /** Erosión, PAD: fuera de la imagen cuenta el relleno 255. */
+    static final class ErosionPad implements ChannelKernel {
+        private final MorphologyFused.CompiledSe cse;
+        ErosionPad(MorphologyFused.CompiledSe cse) { this.cse = cse; }
+
+        @Override
+        public void apply(int[][] src, int srcY0, int[][] out, int y0, int y1, int h) {
+            int w = out[0].length;
+            for (int y=y0; y<y1; y++){
+                int[] o = out[y];
+                int ix0 = interiorStart(cse, y, h, w), ix1 = interiorEnd(cse, y, h, w);
+                if (ix0 < ix1) erodeInterior(src, srcY0, o, y, ix0, ix1, cse);
+                for (int x=0; x<Math.min(ix0, w); x++) o[x] = erodeAtPad(src, srcY0, y, x, h, w, cse);
+                for (int x=Math.max(ix1, ix0); x<w; x++) o[x] = erodeAtPad(src, srcY0, y, x, h, w, cse);
+            }
+        }
+    }
+
+    /** Dilatación, IGNORE: fuera de la imagen se omite. */
+    static final class DilationIgnore implements ChannelKernel {
+        private final MorphologyFused.CompiledSe cse;
+        DilationIgnore(MorphologyFused.CompiledSe cse) { this.cse = cse; }
+
+        @Override
+        public void apply(int[][] src, int srcY0, int[][] out, int y0, int y1, int h) {
+            int w = out[0].length;
+            for (int y=y0; y<y1; y++){
+                int[] o = out[y];
+                int ix0 = interiorStart(cse, y, h, w), ix1 = interiorEnd(cse, y, h, w);
+                if (ix0 < ix1) dilateInterior(src, srcY0, o, y, ix0, ix1, cse);
+                for (int x=0; x<Math.min(ix0, w); x++) o[x] = dilateAtIgnore(src, srcY0, y, x, h, w, cse);
+                for (int x=Math.max(ix1, ix0); x<w; x++) o[x] = dilateAtIgnore(src, srcY0, y, x, h, w, cse);
+            }
+        }
+    }
+
+    /** Dilatación, PAD: fuera de la imagen cuenta el relleno 0. */
+    static final class DilationPad implements ChannelKernel {
+        private final MorphologyFused.CompiledSe cse;
+        DilationPad(MorphologyFused.CompiledSe cse) { this.cse = cse; }
+
+        @Override
+        public void apply(int[][] src, int srcY0, int[][] out, int y0, int y1, int h) {
+            int w = out[0].length;
+            for (int y=y0; y<y1; y++){
+                int[] o = out[y];
+                int ix0 = interiorStart(cse, y, h, w), ix1 = interiorEnd(cse, y, h, w);
+                if (ix0 < ix1) dilateInterior(src, srcY0, o, y, ix0, ix1, cse);
+                for (int x=0; x<Math.min(ix0, w); x++) o[x] = dilateAtPad(src, srcY0, y, x, h, w, cse);
+                for (int x=Math.max(ix1, ix0); x<w; x++) o[x] = dilateAtPad(src, srcY0, y, x, h, w, cse);
+            }
+        }
+    }
+
+    /** Recorrido original de {@link Morphology#applyDirect}, por filas. */
+    static final class Generic implements ChannelKernel {
+        private final Operation op;
+        private final EdgePolicy edgePolicy;
+        private final boolean[][] se;
+        Generic(Operation op, EdgePolicy edgePolicy, boolean[][] se) {
+            this.op = op; this.edgePolicy = edgePolicy; this.se = se;
+        }
+
+        @Override
+        public void apply(int[][] src, int srcY0, int[][] out, int y0, int y1, int h) {
+            int w = out[0].length;
+            int rr = se.length/2, rc = se[0].length/2;
+            final boolean isErosion = (op == Operation.EROSION);
+            for (int y=y0; y<y1; y++){
+                for (int x=0; x<w; x++){
+                    int acc = isErosion ? 255 : 0;
+                    for (int dy=-rr; dy<=rr; dy++){
+                        int gy = y + dy;
+                        for (int dx=-rc; dx<=rc; dx++){
+                            if (!se[dy+rr][dx+rc]) continue;
+                            int gx = x + dx;
+                            int v;
+                            if (gy < 0 || gy >= h || gx < 0 || gx >= w) {
+                                if (edgePolicy != EdgePolicy.PAD) continue;
+                                v = isErosion ? 255 : 0;
+                            } else {
+                                v = src[gy - srcY0][gx];
+                            }
+                            acc = isErosion ? Math.min(acc, v) : Math.max(acc, v);
+                        }
+                    }
+                    out[y][x] = acc;
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------ utilidades
+
+    // Columnas [ix0, ix1) donde todo el SE cae dentro; vacío si la fila y no es interior
+    private static int interiorStart(MorphologyFused.CompiledSe c, int y, int h, int w) {
+        if (y + c.minDy() < 0 || y + c.maxDy() >= h) return w;
+        return Math.min(w, Math.max(0, -c.minDx()));
+    }
+
+    private static int interiorEnd(MorphologyFused.CompiledSe c, int y, int h, int w) {
+        if (y + c.minDy() < 0 || y + c.maxDy() >= h) return w;
+        return Math.max(0, w - c.maxDx());
+    }
+
+    private static void erodeInterior(int[][] src, int srcY0, int[] o, int y, int ix0, int ix1,
+                                      MorphologyFused.CompiledSe c) {
+        final int[] dys = c.dys(), dxs = c.dxs();
+        if (dys.length == 0) { Arrays.fill(o, ix0, ix1, 255); return; }
+        int[] s = src[y + dys[0] - srcY0];
+        int d = dxs[0];
+        for (int x=ix0; x<ix1; x++) o[x] = s[x + d];
+        for (int k=1; k<dys.length; k++){
+            s = src[y + dys[k] - srcY0];
+            d = dxs[k];
+            for (int x=ix0; x<ix1; x++) o[x] = Math.min(o[x], s[x + d]);
+        }
+    }
+
+    private static void dilateInterior(int[][] src, int srcY0, int[] o, int y, int ix0, int ix1,
+                                       MorphologyFused.CompiledSe c) {
+        final int[] dys = c.dys(), dxs = c.dxs();
+        if (dys.length == 0) { Arrays.fill(o, ix0, ix1, 0); return; }
+        int[] s = src[y + dys[0] - srcY0];
+        int d = dxs[0];
+        for (int x=ix0; x<ix1; x++) o[x] = s[x + d];
+        for (int k=1; k<dys.length; k++){
+            s = src[y + dys[k] - srcY0];
+            d = dxs[k];
+            for (int x=ix0; x<ix1; x++) o[x] = Math.max(o[x], s[x + d]);
+        }
+    }
+
+    private static int erodeAtIgnore(int[][] src, int srcY0, int y, int x, int h, int w, MorphologyFused.CompiledSe c) {
+        int acc = 255;
+        for (int k=0; k<c.dys().length; k++){
+            int gy = y + c.dys()[k], gx = x + c.dxs()[k];
+            if (gy < 0 || gy >= h || gx < 0 || gx >= w) continue;
+            acc = Math.min(acc, src[gy - srcY0][gx]);
+        }
+        return acc;
+    }
+
+    private static int erodeAtPad(int[][] src, int srcY0, int y, int x, int h, int w, MorphologyFused.CompiledSe c) {
+        int acc = 255;
+        for (int k=0; k<c.dys().length; k++){
+            int gy = y + c.dys()[k], gx = x + c.dxs()[k];
+            int v = (gy < 0 || gy >= h || gx < 0 || gx >= w) ? 255 : src[gy - srcY0][gx];
+            acc = Math.min(acc, v);
+        }
+        return acc;
+    }
+
+    private static int dilateAtIgnore(int[][] src, int srcY0, int y, int x, int h, int w, MorphologyFused.CompiledSe c) {
+        int acc = 0;
+        for (int k=0; k<c.dys().length; k++){
+            int gy = y + c.dys()[k], gx = x + c.dxs()[k];
+            if (gy < 0 || gy >= h || gx < 0 || gx >= w) continue;
+            acc = Math.max(acc, src[gy - srcY0][gx]);
+        }
+        return acc;
+    }
+
+    private static int dilateAtPad(int[][] src, int srcY0, int y, int x, int h, int w, MorphologyFused.CompiledSe c) {
+        int acc = 0;
+        for (int k=0; k<c.dys().length; k++){
+            int gy = y + c.dys()[k], gx = x + c.dxs()[k];
+            int v = (gy < 0 || gy >= h || gx < 0 || gx >= w) ? 0 : src[gy - srcY0][gx];
+            acc = Math.max(acc, v);
+        }
+        return acc;
+    }
+}
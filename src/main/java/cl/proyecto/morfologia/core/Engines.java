@@ -0,0 +1,69 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Mode;
+import cl.proyecto.morfologia.model.Operation;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Punto único de despacho hacia los distintos motores de morfología.
+ * Las operaciones compuestas (apertura, cierre, ...) se derivan a {@link MorphologyComposite},
+ * que arma sus etapas con estos mismos motores. Las imágenes grises (TYPE_BYTE_GRAY) y
+ * binarias negro/blanco (TYPE_BYTE_BINARY) van a sus rutas rápidas; con un modo paralelo
+ * éstas reparten bandas de filas en el pool del motor (ver {@link #bandPool}).
+ */
+public final class Engines {
+
+    public static BufferedImage apply(Mode mode, BufferedImage img, Operation op, boolean[][] se,
+                                      EdgePolicy edgePolicy, int threads) throws Exception {
+        return apply(mode, img, op, se, edgePolicy, threads, null);
+    }
+
+    /**
+     * Igual que {@link #apply(Mode, BufferedImage, Operation, boolean[][], EdgePolicy, int)},
+     * pero engine (si no es null) reemplaza al motor compartido de threads hilos.
+     */
+    static BufferedImage apply(Mode mode, BufferedImage img, Operation op, boolean[][] se,
+                               EdgePolicy edgePolicy, int threads, MorphologyEngine engine) throws Exception {
+        if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return MorphologyGray.apply(img, op, se, edgePolicy, bandPool(mode, threads, engine));
+        }
+        if (MorphologyBinary.supports(img)) {
+            return MorphologyBinary.apply(img, op, se, edgePolicy, bandPool(mode, threads, engine));
+        }
+        if (op.isComposite()) return MorphologyComposite.apply(mode, img, op, se, edgePolicy, threads, engine);
+        return switch (mode) {
+            case SEQ -> Morphology.apply(img, op, se, edgePolicy);
+            case PAR -> MorphologyParallel.apply(img, op, se, edgePolicy, threads);
+            case PAR_SHARED -> MorphologyParallel.apply(img, op, se, edgePolicy, threads, MorphologyParallel.Tiling.SHARED);
+            case PACKED -> MorphologyPacked.apply(img, op, se, edgePolicy);
+            case FUSED -> MorphologyFused.apply(img, op, se, edgePolicy);
+            case FUSED_PAR -> MorphologyFused.apply(img, op, se, edgePolicy, threads);
+            case SIMD -> MorphologySimd.apply(img, op, se, edgePolicy);
+            case ENGINE -> (engine != null ? engine : MorphologyEngine.shared(threads)).apply(img, op, se, edgePolicy);
+        };
+    }
+
+    /**
+     * Pool en el que las rutas rápidas reparten sus bandas: el del motor (engine o el
+     * compartido de threads hilos) con par, par-shared, fused-par y engine; null (un hilo)
+     * con el resto de los modos o con un solo hilo.
+     */
+    static ForkJoinPool bandPool(Mode mode, int threads, MorphologyEngine engine) {
+        boolean parallel = switch (mode) {
+            case PAR, PAR_SHARED, FUSED_PAR, ENGINE -> true;
+            case SEQ, PACKED, FUSED, SIMD -> false;
+        };
+        if (!parallel || threads <= 1) return null;
+        return (engine != null ? engine : MorphologyEngine.shared(threads)).pool();
+    }
+
+    /** Ruta rápida que tomará la imagen ("gris", "binaria") o null si va por ARGB. */
+    public static String fastPath(BufferedImage img) {
+        if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) return "gris";
+        if (MorphologyBinary.supports(img)) return "binaria";
+        return null;
+    }
+}
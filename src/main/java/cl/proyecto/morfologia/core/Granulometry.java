@@ -0,0 +1,140 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.metrics.Metrics;
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+import cl.proyecto.morfologia.util.ImageIOUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Granulometría: aperturas con SE de tamaño creciente nB (n = 1..N) y su espectro de
+ * patrones (masa que elimina cada escala).
+ *
+ * - La erosión por nB se obtiene erosionando por B la erosión de la escala anterior
+ *   (nB = (n-1)B ⊕ B), así que cada escala cuesta una erosión pequeña. La cadena corre
+ *   sobre un lienzo con margen N*radio relleno con 255 (neutro de la erosión): sin él
+ *   se perderían puntos cuyo paso intermedio cae fuera de la imagen.
+ * - La dilatación de cada escala (por el nB reflejado, armado con la suma de Minkowski y
+ *   descompuesto por {@link SePlanner}) no depende de las demás: se calcula en paralelo
+ *   apenas está lista su erosión.
+ * - Imágenes grises se procesan en un solo canal; el resto en R, G y B (la masa es la
+ *   suma de los tres).
+ */
+public final class Granulometry {
+
+    /**
+     * Resultado de la granulometría.
+     *
+     * @param masses   masa (suma de valores) de la apertura de cada escala; masses[0] es la imagen original
+     * @param spectrum spectrum[n-1] = masses[n-1] - masses[n]: masa eliminada por la escala n
+     * @param openings apertura de cada escala (openings.get(n-1) para nB), o null si no se pidieron
+     */
+    public record Result(long[] masses, long[] spectrum, List<BufferedImage> openings) {
+        /** Espectro como fracción de la masa original. */
+        public double[] normalized() {
+            double[] out = new double[spectrum.length];
+            for (int i=0;i<out.length;i++) out[i] = masses[0] == 0 ? 0 : spectrum[i] / (double) masses[0];
+            return out;
+        }
+    }
+
+    public static Result apply(BufferedImage img, boolean[][] base, int scales, EdgePolicy edgePolicy, int threads,
+                               boolean keepImages) throws Exception {
+        if (scales < 1) throw new IllegalArgumentException("La granulometría requiere al menos 1 escala: " + scales);
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+        int w = img.getWidth(), h = img.getHeight();
+        int[][] R = new int[h][w], G = new int[h][w], B = new int[h][w];
+        ImageIOUtils.splitRGB(ImageIOUtils.toARGB(img), R, G, B);
+        int[][][] channels = img.getType() == BufferedImage.TYPE_BYTE_GRAY ? new int[][][]{R} : new int[][][]{R, G, B};
+        int nc = channels.length;
+
+        long[] masses = new long[scales + 1];
+        for (int[][] ch : channels) masses[0] += mass(ch);
+
+        int my = scales * StructuringElement.radiusRow(base), mx = scales * StructuringElement.radiusCol(base);
+        int[][][] padded = new int[nc][][];
+        for (int c=0;c<nc;c++) padded[c] = pad(channels[c], my, mx);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<List<Future<Opened>>> opened = new ArrayList<>(scales);
+            int[][][] eroded = padded;
+            boolean[][] nB = base;
+            for (int n=1; n<=scales; n++){
+                if (n > 1) nB = StructuringElement.minkowski(nB, base);
+                // Erosión incremental de los canales en paralelo: ε_nB = ε_B(ε_(n-1)B)
+                List<Future<int[][]>> ero = new ArrayList<>(nc);
+                for (int[][] ch : eroded) {
+                    ero.add(pool.submit(() -> Morphology.applyToChannel(ch, Operation.EROSION, base, edgePolicy)));
+                }
+                int[][][] next = new int[nc][][];
+                for (int c=0;c<nc;c++) next[c] = ero.get(c).get();
+                eroded = next;
+                // La dilatación de esta escala corre mientras se erosiona la siguiente
+                boolean[][] refl = StructuringElement.reflect(nB);
+                List<Future<Opened>> scale = new ArrayList<>(nc);
+                for (int c=0;c<nc;c++){
+                    int[][] pe = eroded[c];
+                    scale.add(pool.submit(() -> {
+                        int[][] e = crop(pe, my, mx, h, w);
+                        int[][] o = Morphology.applyToChannel(e, Operation.DILATACION, refl, edgePolicy);
+                        // Sin imágenes solo se conserva la masa, no la apertura
+                        return new Opened(mass(o), keepImages ? o : null);
+                    }));
+                }
+                opened.add(scale);
+            }
+
+            List<BufferedImage> images = keepImages ? new ArrayList<>(scales) : null;
+            long[] spectrum = new long[scales];
+            for (int n=1; n<=scales; n++){
+                int[][][] o = new int[nc][][];
+                for (int c=0;c<nc;c++){
+                    Opened r = opened.get(n-1).get(c).get();
+                    o[c] = r.channel();
+                    masses[n] += r.mass();
+                }
+                spectrum[n-1] = masses[n-1] - masses[n];
+                if (keepImages) images.add(nc == 1 ? ImageIOUtils.mergeRGB(o[0], o[0], o[0]) : ImageIOUtils.mergeRGB(o[0], o[1], o[2]));
+            }
+            Metrics.stage("granulometry.compute", t0, (long) scales * nc * w * h, a0);
+            return new Result(masses, spectrum, images);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ex ? ex : e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static int[][] pad(int[][] ch, int my, int mx) {
+        int h = ch.length, w = ch[0].length;
+        int[][] out = new int[h + 2*my][w + 2*mx];
+        for (int[] row : out) Arrays.fill(row, 255);
+        for (int y=0;y<h;y++) System.arraycopy(ch[y], 0, out[y + my], mx, w);
+        return out;
+    }
+
+    private static int[][] crop(int[][] ch, int my, int mx, int h, int w) {
+        int[][] out = new int[h][];
+        for (int y=0;y<h;y++) out[y] = Arrays.copyOfRange(ch[y + my], mx, mx + w);
+        return out;
+    }
+
+    /** Masa de la apertura de un canal y, si se pidieron imágenes, la apertura misma. */
+    private record Opened(long mass, int[][] channel) {}
+
+    private static long mass(int[][] ch) {
+        long s = 0;
+        for (int[] row : ch) for (int v : row) s += v;
+        return s;
+    }
+}
@@ -1,5 +1,6 @@
 package cl.proyecto.morfologia.core;
 
+import cl.proyecto.morfologia.metrics.Metrics;
 import cl.proyecto.morfologia.model.EdgePolicy;
 import cl.proyecto.morfologia.model.Operation;
 import cl.proyecto.morfologia.model.StructuringElement;
@@ -17,14 +18,34 @@ public final class Morphology {
         int[][] R = new int[h][w], G = new int[h][w], B = new int[h][w];
         ImageIOUtils.splitRGB(img, R,G,B);
 
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
         int[][] rOut = applyToChannel(R, op, se, edgePolicy);
         int[][] gOut = applyToChannel(G, op, se, edgePolicy);
         int[][] bOut = applyToChannel(B, op, se, edgePolicy);
+        Metrics.stage("seq.compute", t0, 3L * w * h, a0);
 
         return ImageIOUtils.mergeRGB(rOut, gOut, bOut);
     }
 
+    /**
+     * Aplica la operación a un canal. El SE se descompone con {@link SePlanner}
+     * (van Herk para rectángulos y líneas, cadenas de pasadas pequeñas para el resto);
+     * si ninguna descomposición es más barata se usa el kernel directo de {@link ChannelKernels}.
+     */
     public static int[][] applyToChannel(int[][] channel, Operation op, boolean[][] se, EdgePolicy edgePolicy){
+        SePlanner.Plan plan = SePlanner.planCached(se);
+        if (!plan.isDirect()) return SePlanner.execute(channel, op, plan);
+        int h = channel.length, w = channel[0].length;
+        int[][] out = new int[h][w];
+        ChannelKernels.of(op, edgePolicy, se).apply(channel, 0, out, 0, h, h);
+        return out;
+    }
+
+    /**
+     * Recorrido directo de referencia: para cada píxel visita todas las posiciones del SE,
+     * O(w·h·|SE|). Se usa para verificar los caminos optimizados.
+     */
+    public static int[][] applyDirect(int[][] channel, Operation op, boolean[][] se, EdgePolicy edgePolicy){
         int h = channel.length, w = channel[0].length;
         int[][] out = new int[h][w];
         int rr = StructuringElement.radiusRow(se);
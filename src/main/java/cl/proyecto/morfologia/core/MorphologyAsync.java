@@ -0,0 +1,181 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.metrics.Metrics;
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.util.ImageIOUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * API asíncrona: {@link #submit} devuelve de inmediato un CompletableFuture con el
+ * resultado, sin excepciones comprobadas.
+ *
+ * - Cada trabajo se coordina en su propio hilo liviano (virtual si la JVM lo permite,
+ *   ver {@link #jobThreads()}): separa los canales, encola los tiles, espera y arma la
+ *   imagen. Así pueden convivir muchos trabajos sin ocupar hilos de cálculo esperando.
+ * - Los tiles ({@link PlaneBands}, un canal por tile) se calculan en un único pool
+ *   acotado de hilos de plataforma compartido por todos los trabajos.
+ * - Cancelar el future (o que venza el plazo) hace que los tiles que aún no empezaron se
+ *   salten; los que están corriendo terminan su banda.
+ * - El progreso se informa como tiles terminados / total, desde los hilos de cálculo.
+ *
+ * El resultado coincide con el de {@link Engines}. Imágenes grises (TYPE_BYTE_GRAY) se
+ * procesan en un canal y devuelven gris; el resto ARGB.
+ */
+public final class MorphologyAsync implements AutoCloseable {
+
+    /** Recibe el avance de un trabajo: tiles terminados y total. */
+    @FunctionalInterface
+    public interface Progress {
+        void update(int done, int total);
+    }
+
+    private static final Map<Integer, MorphologyAsync> SHARED = new ConcurrentHashMap<>();
+    private static final ExecutorService JOBS;
+    private static final boolean VIRTUAL;
+
+    static {
+        // Hilos virtuales si existen (Java 21+; se buscan por reflexión porque el proyecto
+        // compila para Java 17). Si no, un pool de hilos daemon que crece según la demanda.
+        ExecutorService jobs;
+        boolean virtual;
+        try {
+            jobs = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            virtual = true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger n = new AtomicInteger();
+            jobs = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "morfologia-job-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            virtual = false;
+        }
+        JOBS = jobs;
+        VIRTUAL = virtual;
+    }
+
+    private final ExecutorService tiles;
+    private final int threads;
+
+    public MorphologyAsync(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads debe ser >= 1");
+        this.threads = threads;
+        AtomicInteger n = new AtomicInteger();
+        ThreadFactory f = r -> {
+            Thread t = new Thread(r, "morfologia-async-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        this.tiles = Executors.newFixedThreadPool(threads, f);
+    }
+
+    /**
+     * Instancia compartida por número de hilos; vive mientras viva la JVM
+     * (sus hilos son daemon, no impiden que el programa termine).
+     */
+    public static MorphologyAsync shared(int threads) {
+        return SHARED.computeIfAbsent(threads, MorphologyAsync::new);
+    }
+
+    /** Tipo de hilo que coordina los trabajos: "virtuales" o "plataforma". */
+    public static String jobThreads() {
+        return VIRTUAL ? "virtuales" : "plataforma";
+    }
+
+    public CompletableFuture<BufferedImage> submit(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy) {
+        return submit(img, op, se, edgePolicy, null, null);
+    }
+
+    /**
+     * Encola el trabajo.
+     *
+     * @param deadline plazo desde ahora (null = sin plazo); al vencer el future termina con TimeoutException
+     * @param progress avance por tile (null = sin avance)
+     */
+    public CompletableFuture<BufferedImage> submit(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy,
+                                                   Duration deadline, Progress progress) {
+        CompletableFuture<BufferedImage> result = new CompletableFuture<>();
+        if (deadline != null) result.orTimeout(Math.max(1, deadline.toMillis()), TimeUnit.MILLISECONDS);
+        JOBS.execute(() -> {
+            try {
+                run(img, op, se, edgePolicy, progress, result);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /** Deja terminar (o saltar, si se cancelaron) los tiles ya encolados; no acepta trabajos nuevos. */
+    @Override
+    public void close() {
+        SHARED.remove(threads, this);
+        tiles.shutdown();
+    }
+
+    private void run(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy, Progress progress,
+                     CompletableFuture<BufferedImage> result) throws InterruptedException {
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+        int w = img.getWidth(), h = img.getHeight();
+        boolean gray = img.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        byte[][] planes;
+        if (gray) {
+            planes = new byte[][]{MorphologyGray.pixels(img)};
+        } else {
+            planes = new byte[3][w*h];
+            ImageIOUtils.splitPlanes(ImageIOUtils.argbPixels(img), planes[0], planes[1], planes[2]);
+        }
+        byte[][] out = new byte[planes.length][w*h];
+
+        int margin = PlaneBands.margin(op, se);
+        List<PlaneBands.Band> bands = PlaneBands.split(h, PlaneBands.rows(h, margin, threads), margin);
+        int total = bands.size() * planes.length;
+        CountDownLatch pending = new CountDownLatch(total);
+        AtomicInteger done = new AtomicInteger();
+
+        for (int c=0;c<planes.length;c++){
+            for (PlaneBands.Band b : bands){
+                final byte[] src = planes[c], dst = out[c];
+                tiles.execute(() -> {
+                    try {
+                        // Cancelado, vencido o fallado: el tile no empieza
+                        if (result.isDone()) return;
+                        PlaneBands.apply(src, dst, w, b, op, se);
+                        int d = done.incrementAndGet();
+                        if (progress != null) progress.update(d, total);
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e);
+                    } finally {
+                        pending.countDown();
+                    }
+                });
+            }
+        }
+        pending.await();
+        if (result.isDone()) return;
+
+        BufferedImage res;
+        if (gray) {
+            res = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+            System.arraycopy(out[0], 0, ((DataBufferByte) res.getRaster().getDataBuffer()).getData(), 0, w*h);
+        } else {
+            res = ImageIOUtils.mergePlanes(out[0], out[1], out[2], w, h);
+        }
+        Metrics.stage("async.compute", t0, (long) planes.length * w * h, a0);
+        result.complete(res);
+    }
+}
@@ -0,0 +1,178 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+import cl.proyecto.morfologia.util.ImageIOUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Ruta rápida para máscaras binarias (TYPE_BYTE_BINARY de 1 bit, negro/blanco).
+ *
+ * - Cada fila se empaqueta en long[]: 64 píxeles por palabra (bit x en la palabra x/64,
+ *   posición x%64), con blanco = 1.
+ * - Erosión = AND y dilatación = OR de la fila desplazada por cada posición (dy, dx) del SE;
+ *   un desplazamiento horizontal es un par de shifts por palabra.
+ * - Fuera de la imagen se usa el valor neutro (1 en erosión, 0 en dilatación), igual que
+ *   IGNORE/PAD en los motores RGB.
+ * - Con un pool, las filas se reparten en bandas con halo ({@link PlaneBands}); cada banda
+ *   trabaja sobre su propia copia de las filas, porque los kernels marcan la cola de la
+ *   última palabra de cada fila.
+ *
+ * Mueve 64 veces menos datos que un int por píxel y por canal, y el resultado es idéntico
+ * al de los motores RGB sobre la misma imagen (negro = 0, blanco = 255).
+ */
+public final class MorphologyBinary {
+
+    /** true si la imagen es binaria de 1 bit con paleta {negro, blanco}. */
+    public static boolean supports(BufferedImage img) {
+        return img.getType() == BufferedImage.TYPE_BYTE_BINARY && ImageIOUtils.isGrayOrBinary(img);
+    }
+
+    public static BufferedImage apply(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy) {
+        return apply(img, op, se, edgePolicy, null);
+    }
+
+    /**
+     * @param pool pool donde repartir las bandas (null = un hilo, sin bandas)
+     */
+    public static BufferedImage apply(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy,
+                                      ForkJoinPool pool) {
+        if (!supports(img)) throw new IllegalArgumentException("La imagen no es binaria negro/blanco de 1 bit");
+        int w = img.getWidth(), h = img.getHeight();
+        long[][] rows = pack(img);
+        if (pool == null) return unpack(apply(rows, w, op, se), w, h);
+        long[][] out = new long[h][];
+        int margin = PlaneBands.margin(op, se);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (PlaneBands.Band b : PlaneBands.split(h, PlaneBands.rows(h, margin, pool.getParallelism()), margin)) {
+            tasks.add(pool.submit(() -> {
+                long[][] halo = new long[b.rows()][];
+                for (int y=0;y<halo.length;y++) halo[y] = rows[b.top() + y].clone();
+                long[][] res = apply(halo, w, op, se);
+                System.arraycopy(res, b.offset(), out, b.y0(), b.inner());
+            }));
+        }
+        for (ForkJoinTask<?> t : tasks) t.join();
+        return unpack(out, w, h);
+    }
+
+    /**
+     * Aplica una operación (simple o compuesta) a filas empaquetadas de ancho w.
+     */
+    public static long[][] apply(long[][] rows, int w, Operation op, boolean[][] se) {
+        boolean[][] refl = StructuringElement.reflect(se);
+        MorphologyFused.CompiledSe c = MorphologyFused.compile(se), r = MorphologyFused.compile(refl);
+        return switch (op) {
+            case EROSION, DILATACION -> base(rows, w, op == Operation.EROSION, c);
+            case APERTURA -> base(base(rows, w, true, c), w, false, r);
+            case CIERRE -> base(base(rows, w, false, c), w, true, r);
+            case GRADIENTE -> andNot(base(rows, w, false, c), base(rows, w, true, c));
+            case TOPHAT_BLANCO -> andNot(rows, apply(rows, w, Operation.APERTURA, se));
+            case TOPHAT_NEGRO -> andNot(apply(rows, w, Operation.CIERRE, se), rows);
+        };
+    }
+
+    /**
+     * Erosión (AND) o dilatación (OR) de todas las filas desplazadas por el SE.
+     */
+    static long[][] base(long[][] src, int w, boolean isErosion, MorphologyFused.CompiledSe cse) {
+        final int h = src.length, words = src[0].length;
+        final long neutral = isErosion ? -1L : 0L;
+        final int[] dys = cse.dys(), dxs = cse.dxs();
+        // Los bits sobrantes de la última palabra toman el valor neutro (se restauran al final)
+        final long tail = tailMask(w);
+        for (long[] row : src) row[words-1] = isErosion ? row[words-1] | ~tail : row[words-1] & tail;
+
+        long[][] out = new long[h][words];
+        for (int y=0;y<h;y++){
+            long[] acc = out[y];
+            Arrays.fill(acc, neutral);
+            for (int k=0;k<dys.length;k++){
+                int sy = y + dys[k];
+                if (sy < 0 || sy >= h) continue;
+                long[] s = src[sy];
+                // bit x del resultado = bit (x + dx) de la fila origen
+                int ws = Math.floorDiv(dxs[k], 64), bs = Math.floorMod(dxs[k], 64);
+                for (int i=0;i<words;i++){
+                    int j = i + ws;
+                    long lo = (j >= 0 && j < words) ? s[j] : neutral;
+                    long v = lo;
+                    if (bs != 0) {
+                        long hi = (j+1 >= 0 && j+1 < words) ? s[j+1] : neutral;
+                        v = (lo >>> bs) | (hi << (64 - bs));
+                    }
+                    acc[i] = isErosion ? acc[i] & v : acc[i] | v;
+                }
+            }
+            acc[words-1] &= tail;
+        }
+        for (long[] row : src) row[words-1] &= tail;
+        return out;
+    }
+
+    private static long[][] andNot(long[][] a, long[][] b) {
+        long[][] out = new long[a.length][];
+        for (int y=0;y<a.length;y++){
+            out[y] = new long[a[y].length];
+            for (int i=0;i<a[y].length;i++) out[y][i] = a[y][i] & ~b[y][i];
+        }
+        return out;
+    }
+
+    private static long tailMask(int w) {
+        int r = w & 63;
+        return r == 0 ? -1L : (1L << r) - 1;
+    }
+
+    // ---------------------------------------------------------------- empaquetado
+
+    /** Empaqueta la imagen (MSB primero, 8 píxeles por byte) en filas de long (LSB primero). */
+    static long[][] pack(BufferedImage img) {
+        int w = img.getWidth(), h = img.getHeight(), words = (w + 63) >>> 6;
+        long[][] rows = new long[h][words];
+        if (img.getSampleModel() instanceof MultiPixelPackedSampleModel sm && sm.getDataBitOffset() == 0
+                && img.getRaster().getSampleModelTranslateX() == 0 && img.getRaster().getSampleModelTranslateY() == 0
+                && img.getRaster().getDataBuffer() instanceof DataBufferByte db && db.getOffset() == 0) {
+            byte[] data = db.getData();
+            int stride = sm.getScanlineStride(), bytes = (w + 7) >>> 3;
+            for (int y=0;y<h;y++){
+                long[] row = rows[y];
+                for (int b=0, off=y*stride; b<bytes; b++){
+                    long v = Integer.reverse(data[off + b] & 0xFF) >>> 24;
+                    row[b >>> 3] |= v << ((b & 7) << 3);
+                }
+                row[words-1] &= tailMask(w);
+            }
+            return rows;
+        }
+        for (int y=0;y<h;y++){
+            for (int x=0;x<w;x++) if (img.getRaster().getSample(x, y, 0) != 0) rows[y][x >>> 6] |= 1L << (x & 63);
+        }
+        return rows;
+    }
+
+    /** Desempaqueta a una imagen TYPE_BYTE_BINARY negro/blanco nueva. */
+    static BufferedImage unpack(long[][] rows, int w, int h) {
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_BINARY);
+        MultiPixelPackedSampleModel sm = (MultiPixelPackedSampleModel) out.getSampleModel();
+        byte[] data = ((DataBufferByte) out.getRaster().getDataBuffer()).getData();
+        int stride = sm.getScanlineStride(), bytes = (w + 7) >>> 3;
+        for (int y=0;y<h;y++){
+            long[] row = rows[y];
+            for (int b=0, off=y*stride; b<bytes; b++){
+                int v = (int) (row[b >>> 3] >>> ((b & 7) << 3)) & 0xFF;
+                data[off + b] = (byte) (Integer.reverse(v) >>> 24);
+            }
+        }
+        return out;
+    }
+}
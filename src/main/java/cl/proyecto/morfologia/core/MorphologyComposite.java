@@ -0,0 +1,186 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Mode;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+import cl.proyecto.morfologia.util.ImageIOUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Operaciones compuestas: apertura, cierre, gradiente y top-hat blanco/negro.
+ *
+ * - Apertura = dilatación(erosión(f, B), B reflejado); cierre = erosión(dilatación(f, B), B reflejado).
+ * - Gradiente = dilatación - erosión; top-hat blanco = f - apertura; top-hat negro = cierre - f.
+ *
+ * Con los modos fusionados (fused, fused-par, engine) las etapas se encadenan por bandas:
+ * cada banda calcula la primera etapa solo sobre sus filas más el halo que necesita la
+ * segunda, y la segunda etapa consume ese buffer de inmediato; el intermedio nunca existe
+ * como imagen completa. El gradiente se calcula en una sola pasada (mínimo y máximo a la vez).
+ * El resto de los modos encadena sus propias etapas en memoria.
+ */
+public final class MorphologyComposite {
+
+    /** Filas por banda en el pipeline fusionado. */
+    static final int BAND = 64;
+
+    public static BufferedImage apply(Mode mode, BufferedImage img, Operation op, boolean[][] se,
+                                      EdgePolicy edgePolicy, int threads) throws Exception {
+        return apply(mode, img, op, se, edgePolicy, threads, null);
+    }
+
+    /** engine (si no es null) reemplaza al motor compartido cuyo pool usa el pipeline fusionado. */
+    static BufferedImage apply(Mode mode, BufferedImage img, Operation op, boolean[][] se,
+                               EdgePolicy edgePolicy, int threads, MorphologyEngine engine) throws Exception {
+        if (!op.isComposite()) return Engines.apply(mode, img, op, se, edgePolicy, threads, engine);
+        return switch (mode) {
+            case FUSED -> applyFused(img, op, se, 1, null);
+            case FUSED_PAR, ENGINE -> applyFused(img, op, se, threads, engine);
+            default -> applyStaged(mode, img, op, se, edgePolicy, threads);
+        };
+    }
+
+    /**
+     * Encadena etapas completas del motor indicado (sin pasar por disco).
+     */
+    public static BufferedImage applyStaged(Mode mode, BufferedImage img, Operation op, boolean[][] se,
+                                            EdgePolicy edgePolicy, int threads) throws Exception {
+        boolean[][] refl = StructuringElement.reflect(se);
+        return switch (op) {
+            case APERTURA -> stage(mode, stage(mode, img, Operation.EROSION, se, edgePolicy, threads),
+                    Operation.DILATACION, refl, edgePolicy, threads);
+            case CIERRE -> stage(mode, stage(mode, img, Operation.DILATACION, se, edgePolicy, threads),
+                    Operation.EROSION, refl, edgePolicy, threads);
+            case GRADIENTE -> subtract(stage(mode, img, Operation.DILATACION, se, edgePolicy, threads),
+                    stage(mode, img, Operation.EROSION, se, edgePolicy, threads));
+            case TOPHAT_BLANCO -> subtract(img, applyStaged(mode, img, Operation.APERTURA, se, edgePolicy, threads));
+            case TOPHAT_NEGRO -> subtract(applyStaged(mode, img, Operation.CIERRE, se, edgePolicy, threads), img);
+            default -> stage(mode, img, op, se, edgePolicy, threads);
+        };
+    }
+
+    private static BufferedImage stage(Mode mode, BufferedImage img, Operation op, boolean[][] se,
+                                       EdgePolicy edgePolicy, int threads) throws Exception {
+        return Engines.apply(mode, img, op, se, edgePolicy, threads);
+    }
+
+    /** Resta canal a canal a - b (saturada en 0), con alfa opaco. */
+    static BufferedImage subtract(BufferedImage a, BufferedImage b) {
+        int w = a.getWidth(), h = a.getHeight();
+        int[] pa = ImageIOUtils.argbPixels(a), pb = ImageIOUtils.argbPixels(b);
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+        for (int i=0;i<dst.length;i++) dst[i] = diff(pa[i], pb[i]);
+        return out;
+    }
+
+    static int diff(int p, int q) {
+        int r = Math.max(0, ((p>>16)&0xFF) - ((q>>16)&0xFF));
+        int g = Math.max(0, ((p>>8)&0xFF) - ((q>>8)&0xFF));
+        int b = Math.max(0, (p&0xFF) - (q&0xFF));
+        return (0xFF<<24) | (r<<16) | (g<<8) | b;
+    }
+
+    // ---------------------------------------------------------------- pipeline fusionado
+
+    /**
+     * Pipeline por bandas sobre píxeles ARGB empaquetados. Con threads > 1 las bandas
+     * se reparten en el pool de {@link MorphologyEngine#shared(int)} (leen la entrada
+     * compartida y escriben filas disjuntas), así no se crea un pool por llamada.
+     */
+    public static BufferedImage applyFused(BufferedImage img, Operation op, boolean[][] se, int threads)
+            throws InterruptedException, ExecutionException {
+        return applyFused(img, op, se, threads, null);
+    }
+
+    private static BufferedImage applyFused(BufferedImage img, Operation op, boolean[][] se, int threads,
+                                            MorphologyEngine engine) throws InterruptedException, ExecutionException {
+        int w = img.getWidth(), h = img.getHeight();
+        int[] src = ImageIOUtils.argbPixels(img);
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+        Pipeline p = new Pipeline(op, se);
+
+        if (threads <= 1) {
+            for (int y0=0; y0<h; y0+=BAND) p.band(src, dst, w, h, y0, Math.min(h, y0 + BAND));
+            return out;
+        }
+        ForkJoinPool pool = (engine != null ? engine : MorphologyEngine.shared(threads)).pool();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int y=0; y<h; y+=BAND){
+            final int y0 = y, y1 = Math.min(h, y + BAND);
+            futures.add(pool.submit(() -> p.band(src, dst, w, h, y0, y1)));
+        }
+        for (Future<?> f : futures) f.get();
+        return out;
+    }
+
+    /**
+     * Etapas precompiladas de una operación compuesta.
+     */
+    static final class Pipeline {
+        private final Operation op, first, second;
+        private final MorphologyFused.CompiledSe cse1, cse2;
+
+        Pipeline(Operation op, boolean[][] se) {
+            this.op = op;
+            boolean opening = op == Operation.APERTURA || op == Operation.TOPHAT_BLANCO;
+            this.first = opening ? Operation.EROSION : Operation.DILATACION;
+            this.second = opening ? Operation.DILATACION : Operation.EROSION;
+            this.cse1 = MorphologyFused.compile(se);
+            this.cse2 = MorphologyFused.compile(StructuringElement.reflect(se));
+        }
+
+        /** Calcula las filas [y0,y1) de la salida. */
+        void band(int[] src, int[] dst, int w, int h, int y0, int y1) {
+            if (op == Operation.GRADIENTE) {
+                gradient(src, dst, w, h, y0, y1, cse1);
+                return;
+            }
+            // Filas del intermedio que necesita la segunda etapa para esta banda
+            int my0 = Math.max(0, y0 + cse2.minDy()), my1 = Math.min(h, y1 + cse2.maxDy());
+            int[] mid = new int[(my1 - my0) * w];
+            MorphologyFused.applyRegion(src, mid, my0, w, h, my0, my1, 0, w, first, cse1);
+            // El buffer se trata como imagen de filas [my0,my1): sus bordes son bordes
+            // reales de la imagen o quedan fuera del alcance del SE desde la banda.
+            MorphologyFused.applyRegion(mid, dst, -my0, w, my1 - my0, y0 - my0, y1 - my0, 0, w, second, cse2);
+
+            if (op == Operation.TOPHAT_BLANCO) {
+                for (int i=y0*w; i<y1*w; i++) dst[i] = diff(src[i], dst[i]);
+            } else if (op == Operation.TOPHAT_NEGRO) {
+                for (int i=y0*w; i<y1*w; i++) dst[i] = diff(dst[i], src[i]);
+            }
+        }
+    }
+
+    /**
+     * Gradiente en una pasada: por cada píxel se acumulan a la vez el máximo y el mínimo
+     * del vecindario, y se escribe su diferencia por canal.
+     */
+    static void gradient(int[] src, int[] dst, int w, int h, int y0, int y1, MorphologyFused.CompiledSe cse) {
+        final int[] dys = cse.dys(), dxs = cse.dxs();
+        final int n = dys.length;
+        final int alpha = 0xFF<<24;
+        for (int y=y0; y<y1; y++){
+            for (int x=0; x<w; x++){
+                int rMin = 255, gMin = 255, bMin = 255, rMax = 0, gMax = 0, bMax = 0;
+                for (int k=0;k<n;k++){
+                    int sy = y + dys[k], sx = x + dxs[k];
+                    if (sy < 0 || sy >= h || sx < 0 || sx >= w) continue;
+                    int p = src[sy*w + sx];
+                    int r = (p>>16)&0xFF, g = (p>>8)&0xFF, b = p&0xFF;
+                    rMin = Math.min(rMin, r); rMax = Math.max(rMax, r);
+                    gMin = Math.min(gMin, g); gMax = Math.max(gMax, g);
+                    bMin = Math.min(bMin, b); bMax = Math.max(bMax, b);
+                }
+                // Sin vecinos válidos el gradiente es 0 (max=0, min=255 → se satura)
+                dst[y*w + x] = alpha | (Math.max(0, rMax-rMin)<<16) | (Math.max(0, gMax-gMin)<<8) | Math.max(0, bMax-bMin);
+            }
+        }
+    }
+}
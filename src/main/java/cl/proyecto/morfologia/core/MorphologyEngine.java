@@ -0,0 +1,224 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.metrics.Metrics;
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+import cl.proyecto.morfologia.util.ImageIOUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Motor de larga duración con un pool ForkJoin (robo de trabajo) compartido.
+ *
+ * - El pool se crea una sola vez y se reutiliza entre imágenes (no se crea un
+ *   pool por canal ni por llamada).
+ * - La imagen se divide en tiles 2D cuyo tamaño se adapta al tamaño de la imagen
+ *   y al costo del SE; hay varias veces más tiles que hilos para que los hilos
+ *   ociosos roben tiles a los ocupados.
+ * - Cada tile usa el kernel fusionado R,G,B de {@link MorphologyFused}, leyendo la
+ *   entrada compartida y escribiendo en su región de la salida.
+ * - Si {@link SePlanner} descompone el SE (rectángulos, líneas, discos grandes), los
+ *   tiles son bandas de filas completas con halo ({@link PlaneBands#rows}) que ejecutan el
+ *   plan canal por canal con {@link SePlanner#executeTile} sobre buffers de scratch
+ *   reutilizados, y empaquetan sus filas en la salida.
+ * - {@link #applyAll} reparte los tiles de muchas imágenes pequeñas en el mismo pool.
+ */
+public final class MorphologyEngine implements AutoCloseable {
+
+    /** Geometría de tiles (alto y ancho en píxeles). */
+    public record TileGeometry(int tileH, int tileW) {}
+
+    // Trabajo mínimo por tile (píxeles * posiciones del SE) para amortizar la tarea
+    private static final long MIN_TILE_WORK = 1L << 16;
+    // Tiles por hilo, para dejar margen al robo de trabajo
+    private static final int TILES_PER_THREAD = 8;
+
+    private static final Map<Integer, MorphologyEngine> SHARED = new ConcurrentHashMap<>();
+
+    private final ForkJoinPool pool;
+    private final boolean shared;
+    private volatile TileGeometry fixedGeometry;
+
+    public MorphologyEngine(int threads) {
+        this(threads, false);
+    }
+
+    private MorphologyEngine(int threads, boolean shared) {
+        if (threads < 1) throw new IllegalArgumentException("threads debe ser >= 1");
+        this.pool = new ForkJoinPool(threads);
+        this.shared = shared;
+    }
+
+    /**
+     * Motor compartido por número de hilos; vive mientras viva la JVM
+     * (sus hilos son daemon, no impiden que el programa termine) y {@link #close()} no lo cierra.
+     */
+    public static MorphologyEngine shared(int threads) {
+        return SHARED.computeIfAbsent(threads, t -> new MorphologyEngine(t, true));
+    }
+
+    public int parallelism() { return pool.getParallelism(); }
+
+    /** Pool del motor, para otros pipelines del paquete que reparten bandas (no se cierra). */
+    ForkJoinPool pool() { return pool; }
+
+    /** Fija la geometría de tiles (null = adaptativa). */
+    public void setTileGeometry(TileGeometry g) { this.fixedGeometry = g; }
+
+    public BufferedImage apply(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy) {
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+        ImageTask t = task(img, op, se, MorphologyFused.compile(se));
+        pool.invoke(t);
+        Metrics.stage("engine.compute", t0, (long) t.w * t.h, a0);
+        Metrics.parallel("engine", t0, pool.getParallelism());
+        return t.out;
+    }
+
+    /**
+     * Procesa varias imágenes a la vez: los tiles de todas compiten en el mismo pool.
+     */
+    public List<BufferedImage> applyAll(List<BufferedImage> imgs, Operation op, boolean[][] se, EdgePolicy edgePolicy) {
+        MorphologyFused.CompiledSe cse = MorphologyFused.compile(se);
+        List<ImageTask> tasks = new ArrayList<>(imgs.size());
+        for (BufferedImage img : imgs) tasks.add(task(img, op, se, cse));
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override protected void compute() { invokeAll(tasks); }
+        });
+        List<BufferedImage> out = new ArrayList<>(tasks.size());
+        for (ImageTask t : tasks) out.add(t.out);
+        return out;
+    }
+
+    /**
+     * Geometría adaptativa: tiles anchos (recorrido por filas amigable con la caché),
+     * altos al menos como el SE, y tantos como permita el trabajo mínimo por tile,
+     * hasta TILES_PER_THREAD por hilo.
+     */
+    public TileGeometry geometry(int w, int h, MorphologyFused.CompiledSe cse) {
+        TileGeometry g = fixedGeometry;
+        if (g != null) return g;
+        long work = (long) w * h * Math.max(1, cse.size());
+        long tiles = Math.max(1, Math.min((long) parallelism() * TILES_PER_THREAD, work / MIN_TILE_WORK));
+        long area = Math.max(1, (long) w * h / tiles);
+        int minH = Math.max(8, cse.maxDy() - cse.minDy() + 1);
+        int tileW = (int) Math.min(w, Math.max(64, area / minH));
+        int tileH = (int) Math.min(h, Math.max(minH, area / tileW));
+        return new TileGeometry(tileH, tileW);
+    }
+
+    private ImageTask task(BufferedImage img, Operation op, boolean[][] se, MorphologyFused.CompiledSe cse) {
+        int w = img.getWidth(), h = img.getHeight();
+        int[] src = ImageIOUtils.argbPixels(img);
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+        SePlanner.Plan plan = SePlanner.planCached(se);
+        if (plan.isDirect()) {
+            TileGeometry g = geometry(w, h, cse);
+            int rows = (h + g.tileH() - 1) / g.tileH(), cols = (w + g.tileW() - 1) / g.tileW();
+            return new ImageTask(src, dst, w, h, op, cse, g, rows, cols, out, null, 0, null);
+        }
+        // Plan descompuesto: bandas de filas completas (la geometría fija solo aporta el alto)
+        int margin = StructuringElement.radiusRow(se);
+        TileGeometry fixed = fixedGeometry;
+        int tileH = fixed != null ? Math.min(h, fixed.tileH()) : PlaneBands.rows(h, margin, parallelism());
+        int[][][] channels = new int[3][h][w];
+        for (int y=0;y<h;y++){
+            int[] r = channels[0][y], gr = channels[1][y], b = channels[2][y];
+            for (int x=0, i=y*w; x<w; x++, i++){
+                int p = src[i];
+                r[x] = (p>>16)&0xFF; gr[x] = (p>>8)&0xFF; b[x] = p&0xFF;
+            }
+        }
+        TileGeometry g = new TileGeometry(tileH, w);
+        return new ImageTask(src, dst, w, h, op, cse, g, (h + tileH - 1) / tileH, 1, out, plan, margin, channels);
+    }
+
+    /** Cierra el pool; en los motores de {@link #shared(int)} no hace nada, porque otros los siguen usando. */
+    @Override
+    public void close() {
+        if (shared) return;
+        pool.shutdown();
+    }
+
+    /** Tarea raíz de una imagen: reparte sus tiles en forma recursiva. */
+    private static final class ImageTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final int[] src, dst;
+        final int w, h, rows, cols;
+        final Operation op;
+        final MorphologyFused.CompiledSe cse;
+        final TileGeometry g;
+        final BufferedImage out;
+        // Solo con plan descompuesto: halo en filas y canales R, G, B de entrada y salida
+        final SePlanner.Plan plan;
+        final int margin;
+        final int[][][] channels, results;
+
+        ImageTask(int[] src, int[] dst, int w, int h, Operation op, MorphologyFused.CompiledSe cse,
+                  TileGeometry g, int rows, int cols, BufferedImage out,
+                  SePlanner.Plan plan, int margin, int[][][] channels) {
+            this.src = src; this.dst = dst; this.w = w; this.h = h;
+            this.op = op; this.cse = cse; this.g = g; this.rows = rows; this.cols = cols; this.out = out;
+            this.plan = plan; this.margin = margin; this.channels = channels;
+            this.results = channels == null ? null : new int[3][h][w];
+        }
+
+        @Override
+        protected void compute() {
+            new TileRange(this, 0, rows * cols).compute();
+        }
+    }
+
+    /** Rango de tiles [lo, hi): se parte en dos hasta llegar a un tile. */
+    private static final class TileRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final ImageTask t;
+        final int lo, hi;
+
+        TileRange(ImageTask t, int lo, int hi) { this.t = t; this.lo = lo; this.hi = hi; }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+                int ty = lo / t.cols, tx = lo % t.cols;
+                int y0 = ty * t.g.tileH(), x0 = tx * t.g.tileW();
+                int y1 = Math.min(t.h, y0 + t.g.tileH()), x1 = Math.min(t.w, x0 + t.g.tileW());
+                if (t.plan == null) MorphologyFused.applyRegion(t.src, t.dst, t.w, t.h, y0, y1, x0, x1, t.op, t.cse);
+                else planned(y0, y1);
+                Metrics.tile("engine", 0, t0, (long) (y1 - y0) * (x1 - x0), a0);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new TileRange(t, lo, mid), new TileRange(t, mid, hi));
+        }
+
+        /** Filas [y0, y1) con el plan: cada canal en sus filas de results y luego empaquetadas en la salida. */
+        private void planned(int y0, int y1) {
+            int top = Math.max(0, y0 - t.margin), bot = Math.min(t.h, y1 + t.margin), w = t.w;
+            SePlanner.Scratch s = SePlanner.Scratch.acquire();
+            try {
+                s.reserve(t.plan, bot - top, w);
+                for (int c=0;c<3;c++) SePlanner.executeTile(t.channels[c], top, bot, t.op, t.plan, t.results[c], y0, y1, s);
+                for (int y=y0;y<y1;y++){
+                    int[] r = t.results[0][y], g = t.results[1][y], b = t.results[2][y];
+                    for (int x=0, i=y*w; x<w; x++, i++) t.dst[i] = (0xFF<<24) | (r[x]<<16) | (g[x]<<8) | b[x];
+                }
+            } finally {
+                SePlanner.Scratch.release(s);
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+import cl.proyecto.morfologia.util.ImageIOUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Kernel fusionado: calcula R, G y B en una sola pasada sobre las posiciones del SE.
+ *
+ * - Trabaja directamente sobre los píxeles ARGB empaquetados (un int por píxel),
+ *   sin separar canales: cada vecino se lee una sola vez y se actualizan los tres
+ *   acumuladores a la vez.
+ * - El SE se precompila a una lista de desplazamientos (dy, dx).
+ * - Las filas/columnas interiores (donde todo el SE cae dentro de la imagen) se
+ *   recorren sin chequeos de borde.
+ * - Versión secuencial y paralela (un solo pool y un solo juego de tareas para
+ *   los tres canales, en lugar de tres).
+ */
+public final class MorphologyFused {
+
+    public static BufferedImage apply(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy) {
+        int w = img.getWidth(), h = img.getHeight();
+        int[] src = ImageIOUtils.argbPixels(img);
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+        applyRegion(src, dst, w, h, 0, h, 0, w, op, compile(se));
+        return out;
+    }
+
+    /**
+     * Versión paralela: divide las filas en bandas que leen la entrada compartida
+     * (sin copias) y escriben en filas disjuntas de la salida.
+     */
+    public static BufferedImage apply(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy, int threads)
+            throws InterruptedException, ExecutionException {
+        int w = img.getWidth(), h = img.getHeight();
+        int[] src = ImageIOUtils.argbPixels(img);
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+
+        int rr = StructuringElement.radiusRow(se);
+        int tiles = Math.min(threads, Math.max(1, h / Math.max(32, rr*2+1)));
+        int rowsPerTile = (int)Math.ceil(h / (double)tiles);
+
+        CompiledSe cse = compile(se);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t=0; t<tiles; t++){
+            final int y0 = t * rowsPerTile, y1 = Math.min(h, y0 + rowsPerTile);
+            if (y0 >= y1) break;
+            futures.add(pool.submit(() -> applyRegion(src, dst, w, h, y0, y1, 0, w, op, cse)));
+        }
+        for (Future<?> f : futures) f.get();
+        pool.shutdown();
+        pool.awaitTermination(7, TimeUnit.DAYS);
+        return out;
+    }
+
+    /**
+     * SE precompilado: desplazamientos (dy, dx) de las posiciones activas y su caja envolvente.
+     */
+    public record CompiledSe(int[] dys, int[] dxs, int minDy, int maxDy, int minDx, int maxDx) {
+        public int size() { return dys.length; }
+    }
+
+    public static CompiledSe compile(boolean[][] se) {
+        int rr = StructuringElement.radiusRow(se);
+        int rc = StructuringElement.radiusCol(se);
+        int n = 0;
+        for (boolean[] row : se) for (boolean b : row) if (b) n++;
+        int[] dys = new int[n], dxs = new int[n];
+        int minDy = 0, maxDy = 0, minDx = 0, maxDx = 0;
+        for (int i=0, k=0; i<se.length; i++){
+            for (int j=0; j<se[i].length; j++){
+                if (!se[i][j]) continue;
+                dys[k] = i - rr; dxs[k] = j - rc;
+                minDy = Math.min(minDy, dys[k]); maxDy = Math.max(maxDy, dys[k]);
+                minDx = Math.min(minDx, dxs[k]); maxDx = Math.max(maxDx, dxs[k]);
+                k++;
+            }
+        }
+        return new CompiledSe(dys, dxs, minDy, maxDy, minDx, maxDx);
+    }
+
+    /**
+     * Calcula el rectángulo [y0,y1) x [x0,x1) de la salida. Fuera de la imagen se usa
+     * el valor neutro (equivale a IGNORE y a PAD), con alfa opaco como en mergeRGB.
+     */
+    public static void applyRegion(int[] src, int[] dst, int w, int h, int y0, int y1, int x0, int x1,
+                                   Operation op, CompiledSe cse) {
+        applyRegion(src, dst, 0, w, h, y0, y1, x0, x1, op, cse);
+    }
+
+    /**
+     * Igual que la anterior, pero la fila y se escribe en la fila (y - dstRow0) de dst,
+     * para que dst pueda ser un buffer de solo las filas [dstRow0, ...).
+     */
+    public static void applyRegion(int[] src, int[] dst, int dstRow0, int w, int h, int y0, int y1, int x0, int x1,
+                                   Operation op, CompiledSe cse) {
+        final int[] dys = cse.dys(), dxs = cse.dxs();
+        final int n = dys.length;
+        final int[] deltas = new int[n];
+        for (int k=0;k<n;k++) deltas[k] = dys[k]*w + dxs[k];
+
+        final boolean isErosion = (op == Operation.EROSION);
+        final int neutral = isErosion ? 255 : 0;
+        final int alpha = 0xFF<<24;
+        // Región interior: todo el SE cae dentro de la imagen
+        final int ix0 = Math.max(0, -cse.minDx()), ix1 = Math.min(w, w - cse.maxDx());
+        final int iy0 = Math.max(0, -cse.minDy()), iy1 = Math.min(h, h - cse.maxDy());
+
+        for (int y=y0; y<y1; y++){
+            boolean rowInterior = y >= iy0 && y < iy1;
+            int base = y*w, dbase = (y - dstRow0)*w;
+            for (int x=x0; x<x1; x++){
+                int r = neutral, g = neutral, b = neutral;
+                if (rowInterior && x >= ix0 && x < ix1) {
+                    int p0 = base + x;
+                    if (isErosion) {
+                        for (int k=0;k<n;k++){
+                            int p = src[p0 + deltas[k]];
+                            r = Math.min(r, (p>>16)&0xFF);
+                            g = Math.min(g, (p>>8)&0xFF);
+                            b = Math.min(b, p&0xFF);
+                        }
+                    } else {
+                        for (int k=0;k<n;k++){
+                            int p = src[p0 + deltas[k]];
+                            r = Math.max(r, (p>>16)&0xFF);
+                            g = Math.max(g, (p>>8)&0xFF);
+                            b = Math.max(b, p&0xFF);
+                        }
+                    }
+                } else {
+                    for (int k=0;k<n;k++){
+                        int sy = y + dys[k], sx = x + dxs[k];
+                        if (sy < 0 || sy >= h || sx < 0 || sx >= w) continue;
+                        int p = src[sy*w + sx];
+                        if (isErosion) {
+                            r = Math.min(r, (p>>16)&0xFF);
+                            g = Math.min(g, (p>>8)&0xFF);
+                            b = Math.min(b, p&0xFF);
+                        } else {
+                            r = Math.max(r, (p>>16)&0xFF);
+                            g = Math.max(g, (p>>8)&0xFF);
+                            b = Math.max(b, p&0xFF);
+                        }
+                    }
+                }
+                dst[dbase + x] = alpha | (r<<16) | (g<<8) | b;
+            }
+        }
+    }
+}
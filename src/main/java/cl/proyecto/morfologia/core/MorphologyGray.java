@@ -0,0 +1,104 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Ruta rápida para imágenes en escala de grises (TYPE_BYTE_GRAY).
+ *
+ * - Trabaja sobre un único plano byte[] leído directamente del raster, en lugar de
+ *   convertir a ARGB y procesar tres canales int iguales.
+ * - SE descomponibles: un solo canal por {@link SePlanner}; el resto por los kernels
+ *   de planos de {@link MorphologySimd} (vectoriales si están disponibles).
+ * - Con un pool, el plano se reparte en bandas con halo ({@link PlaneBands}) que se
+ *   calculan en paralelo y escriben directo en el raster de salida.
+ * - La salida es TYPE_BYTE_GRAY, así que el PNG resultante también es gris de 8 bits.
+ *
+ * Para grises de 8 bits la conversión a ARGB es la identidad, de modo que el resultado
+ * coincide con el de los motores RGB (R = G = B) para todas las operaciones.
+ */
+public final class MorphologyGray {
+
+    public static BufferedImage apply(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy) {
+        return apply(img, op, se, edgePolicy, null);
+    }
+
+    /**
+     * @param pool pool donde repartir las bandas (null = un hilo, sin bandas)
+     */
+    public static BufferedImage apply(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy,
+                                      ForkJoinPool pool) {
+        int w = img.getWidth(), h = img.getHeight();
+        BufferedImage res = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] dst = ((DataBufferByte) res.getRaster().getDataBuffer()).getData();
+        byte[] src = pixels(img);
+        if (pool == null) {
+            System.arraycopy(applyToPlane(src, w, h, op, se), 0, dst, 0, w*h);
+            return res;
+        }
+        int margin = PlaneBands.margin(op, se);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (PlaneBands.Band b : PlaneBands.split(h, PlaneBands.rows(h, margin, pool.getParallelism()), margin)) {
+            tasks.add(pool.submit(() -> PlaneBands.apply(src, dst, w, b, op, se)));
+        }
+        for (ForkJoinTask<?> t : tasks) t.join();
+        return res;
+    }
+
+    /**
+     * Aplica una operación (simple o compuesta) a un plano de w*h bytes.
+     */
+    public static byte[] applyToPlane(byte[] plane, int w, int h, Operation op, boolean[][] se) {
+        boolean[][] refl = StructuringElement.reflect(se);
+        return switch (op) {
+            case EROSION, DILATACION -> base(plane, w, h, op, se);
+            case APERTURA -> base(base(plane, w, h, Operation.EROSION, se), w, h, Operation.DILATACION, refl);
+            case CIERRE -> base(base(plane, w, h, Operation.DILATACION, se), w, h, Operation.EROSION, refl);
+            case GRADIENTE -> subtract(base(plane, w, h, Operation.DILATACION, se), base(plane, w, h, Operation.EROSION, se));
+            case TOPHAT_BLANCO -> subtract(plane, applyToPlane(plane, w, h, Operation.APERTURA, se));
+            case TOPHAT_NEGRO -> subtract(applyToPlane(plane, w, h, Operation.CIERRE, se), plane);
+        };
+    }
+
+    private static byte[] base(byte[] plane, int w, int h, Operation op, boolean[][] se) {
+        SePlanner.Plan plan = SePlanner.planCached(se);
+        if (plan.isDirect()) return MorphologySimd.applyToPlane(plane, w, h, op, se);
+        int[][] ch = new int[h][w];
+        for (int y=0;y<h;y++) for (int x=0;x<w;x++) ch[y][x] = plane[y*w + x] & 0xFF;
+        int[][] res = SePlanner.execute(ch, op, plan);
+        byte[] out = new byte[w*h];
+        for (int y=0;y<h;y++) for (int x=0;x<w;x++) out[y*w + x] = (byte) res[y][x];
+        return out;
+    }
+
+    private static byte[] subtract(byte[] a, byte[] b) {
+        byte[] out = new byte[a.length];
+        for (int i=0;i<a.length;i++) out[i] = (byte) Math.max(0, (a[i] & 0xFF) - (b[i] & 0xFF));
+        return out;
+    }
+
+    /** Plano de la imagen gris: el arreglo del raster si es compacto, si no una copia. */
+    static byte[] pixels(BufferedImage img) {
+        int w = img.getWidth(), h = img.getHeight();
+        if (img.getRaster().getDataBuffer() instanceof DataBufferByte db
+                && img.getSampleModel() instanceof ComponentSampleModel sm
+                && sm.getScanlineStride() == w && sm.getPixelStride() == 1
+                && img.getRaster().getSampleModelTranslateX() == 0
+                && img.getRaster().getSampleModelTranslateY() == 0
+                && db.getNumBanks() == 1 && db.getOffset() == 0 && db.getData().length == w * h) {
+            return db.getData();
+        }
+        byte[] out = new byte[w*h];
+        img.getRaster().getDataElements(0, 0, w, h, out);
+        return out;
+    }
+}
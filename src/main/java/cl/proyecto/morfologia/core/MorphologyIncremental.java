@@ -0,0 +1,158 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.metrics.Metrics;
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Mode;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recalculo incremental: actualiza una salida previa cuando la entrada cambió solo en
+ * algunas regiones.
+ *
+ * - Un píxel de entrada cambiado afecta a las salidas a distancia (radiusRow, radiusCol)
+ *   por cada etapa de la operación (dos en apertura, cierre y top-hats).
+ * - Cada región sucia se expande por ese alcance, las que se solapan se unen, y cada una
+ *   se recalcula sobre un recorte de la entrada con un margen de contexto del mismo
+ *   alcance; solo la parte afectada se copia sobre la salida previa.
+ * - El costo es proporcional al área cambiada (más el margen), no al de la imagen.
+ *
+ * El resultado es idéntico a recalcular la imagen completa.
+ */
+public final class MorphologyIncremental {
+
+    /** Alto y ancho de los bloques que compara {@link #diff}. */
+    public static final int BLOCK = 32;
+
+    /**
+     * Resultado de una actualización.
+     *
+     * @param regions regiones de la salida que se recalcularon
+     * @param pixels  píxeles calculados (incluye el margen de contexto)
+     */
+    public record Result(BufferedImage out, List<Rectangle> regions, long pixels) {}
+
+    /**
+     * Calcula la diferencia entre prevIn y newIn y actualiza prevOut (en su lugar).
+     */
+    public static Result update(Mode mode, BufferedImage prevIn, BufferedImage prevOut, BufferedImage newIn,
+                                Operation op, boolean[][] se, EdgePolicy edgePolicy, int threads) throws Exception {
+        return update(mode, prevOut, newIn, diff(prevIn, newIn), op, se, edgePolicy, threads);
+    }
+
+    /**
+     * Actualiza prevOut (en su lugar) recalculando solo lo afectado por las regiones
+     * sucias de la entrada (en coordenadas de newIn).
+     */
+    public static Result update(Mode mode, BufferedImage prevOut, BufferedImage newIn, List<Rectangle> dirty,
+                                Operation op, boolean[][] se, EdgePolicy edgePolicy, int threads) throws Exception {
+        int w = newIn.getWidth(), h = newIn.getHeight();
+        if (prevOut.getWidth() != w || prevOut.getHeight() != h)
+            throw new IllegalArgumentException("La salida previa y la entrada nueva deben tener el mismo tamaño");
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+
+        int stages = op.stages();
+        int ry = stages * StructuringElement.radiusRow(se), rx = stages * StructuringElement.radiusCol(se);
+        Rectangle bounds = new Rectangle(0, 0, w, h);
+        List<Rectangle> regions = new ArrayList<>();
+        for (Rectangle r : dirty) {
+            Rectangle a = grow(r, rx, ry).intersection(bounds);
+            if (!a.isEmpty()) regions.add(a);
+        }
+        regions = merge(regions);
+
+        long pixels = 0;
+        for (Rectangle a : regions) {
+            // Contexto: los valores dentro de a solo dependen de entradas a menos de (rx, ry)
+            Rectangle c = grow(a, rx, ry).intersection(bounds);
+            BufferedImage res = Engines.apply(mode, newIn.getSubimage(c.x, c.y, c.width, c.height), op, se, edgePolicy, threads);
+            copy(res, a.x - c.x, a.y - c.y, prevOut, a);
+            pixels += (long) c.width * c.height;
+        }
+        Metrics.stage("incremental.compute", t0, pixels, a0);
+        return new Result(prevOut, regions, pixels);
+    }
+
+    /**
+     * Regiones de la entrada que cambiaron: bloques de {@link #BLOCK}x{@link #BLOCK} con algún
+     * píxel distinto, unidos en tramos horizontales.
+     */
+    public static List<Rectangle> diff(BufferedImage a, BufferedImage b) {
+        int w = a.getWidth(), h = a.getHeight();
+        if (b.getWidth() != w || b.getHeight() != h)
+            throw new IllegalArgumentException("Las imágenes a comparar deben tener el mismo tamaño");
+        int bw = (w + BLOCK - 1) / BLOCK;
+        int[] ra = new int[w], rb = new int[w];
+        List<Rectangle> out = new ArrayList<>();
+        for (int y0=0; y0<h; y0+=BLOCK){
+            int y1 = Math.min(h, y0 + BLOCK);
+            boolean[] changed = new boolean[bw];
+            for (int y=y0;y<y1;y++){
+                row(a, y, ra);
+                row(b, y, rb);
+                for (int bx=0;bx<bw;bx++){
+                    if (changed[bx]) continue;
+                    for (int x=bx*BLOCK, x1=Math.min(w, x+BLOCK); x<x1; x++){
+                        if (ra[x] != rb[x]) { changed[bx] = true; break; }
+                    }
+                }
+            }
+            for (int bx=0; bx<bw; ){
+                if (!changed[bx]) { bx++; continue; }
+                int s = bx;
+                while (bx < bw && changed[bx]) bx++;
+                out.add(new Rectangle(s*BLOCK, y0, Math.min(w, bx*BLOCK) - s*BLOCK, y1 - y0));
+            }
+        }
+        return out;
+    }
+
+    private static Rectangle grow(Rectangle r, int rx, int ry) {
+        return new Rectangle(r.x - rx, r.y - ry, r.width + 2*rx, r.height + 2*ry);
+    }
+
+    /** Une las regiones que se solapan hasta que no quede ningún par solapado. */
+    static List<Rectangle> merge(List<Rectangle> rects) {
+        List<Rectangle> out = new ArrayList<>(rects);
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            outer:
+            for (int i=0;i<out.size();i++){
+                for (int j=i+1;j<out.size();j++){
+                    if (out.get(i).intersects(out.get(j))) {
+                        out.set(i, out.get(i).union(out.remove(j)));
+                        merged = true;
+                        break outer;
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private static void row(BufferedImage img, int y, int[] dst) {
+        if (img.getType() == BufferedImage.TYPE_INT_ARGB || img.getType() == BufferedImage.TYPE_INT_RGB) {
+            img.getRaster().getDataElements(0, y, dst.length, 1, dst);
+        } else {
+            img.getRGB(0, y, dst.length, 1, dst, 0, dst.length);
+        }
+    }
+
+    /** Copia el área a de la salida desde res (desplazada en (ox, oy)). */
+    private static void copy(BufferedImage res, int ox, int oy, BufferedImage dst, Rectangle a) {
+        if (res.getType() == dst.getType() && res.getType() != BufferedImage.TYPE_CUSTOM) {
+            dst.getRaster().setDataElements(a.x, a.y,
+                    res.getRaster().createChild(ox, oy, a.width, a.height, 0, 0, null));
+        } else {
+            int[] buf = new int[a.width * a.height];
+            res.getRGB(ox, oy, a.width, a.height, buf, 0, a.width);
+            dst.setRGB(a.x, a.y, a.width, a.height, buf, 0, a.width);
+        }
+    }
+}
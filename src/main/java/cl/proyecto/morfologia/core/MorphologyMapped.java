@@ -0,0 +1,92 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.metrics.Metrics;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.util.RawPlanar;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Procesa archivos {@link RawPlanar} mapeados en memoria, de .raw a .raw.
+ *
+ * - Cada canal se divide en bandas de filas ({@link PlaneBands}); cada banda se lee del
+ *   mapeo de entrada con su halo y sus filas interiores se escriben directo en el mapeo
+ *   de la salida.
+ * - El heap usado es O(hilos * filas de banda * ancho), sin importar el tamaño del archivo.
+ *
+ * El resultado es idéntico al de los motores en memoria sobre la misma imagen.
+ */
+public final class MorphologyMapped {
+
+    /**
+     * Bytes aproximados de cada banda (sin el margen). Los kernels usan varias copias
+     * int de la banda, así que cada hilo necesita unas 16 veces este tamaño de heap.
+     */
+    public static final int BAND_BYTES = 256 << 10;
+
+    /**
+     * Resumen de una ejecución.
+     */
+    public record Stats(int width, int height, int channels, int bands) {}
+
+    public static Stats process(File in, File out, Operation op, boolean[][] se, int threads) throws IOException {
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+        int margin = PlaneBands.margin(op, se);
+        try (FileChannel src = RawPlanar.open(in)) {
+            RawPlanar.Header h = RawPlanar.readHeader(src);
+            int w = h.width(), hgt = h.height();
+            // Al menos 4 márgenes por banda para que el contexto repetido no domine
+            int rows = Math.max(1, Math.min(hgt, Math.max(4 * margin, BAND_BYTES / w)));
+            List<PlaneBands.Band> bands = PlaneBands.split(hgt, rows, margin);
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+            try (FileChannel dst = RawPlanar.create(out, h)) {
+                List<Future<?>> fs = new ArrayList<>();
+                for (int c=0;c<h.channels();c++){
+                    for (PlaneBands.Band b : bands){
+                        final int ch = c;
+                        fs.add(pool.submit(() -> {
+                            band(src, dst, h, ch, b, op, se);
+                            return null;
+                        }));
+                    }
+                }
+                for (Future<?> f : fs) f.get();
+                Metrics.stage("mapped.compute", t0, h.channels() * h.planeBytes(), a0);
+                return new Stats(w, hgt, h.channels(), bands.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Procesamiento interrumpido");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) throw io;
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                throw new IOException(e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Calcula la banda b del canal c: lee su halo del mapeo de entrada y escribe sus filas
+     * interiores en el de salida.
+     */
+    private static void band(FileChannel src, FileChannel dst, RawPlanar.Header h, int c, PlaneBands.Band b,
+                             Operation op, boolean[][] se) throws IOException {
+        int w = h.width();
+        byte[] halo = new byte[b.rows() * w], res = new byte[b.inner() * w];
+        RawPlanar.map(src, h, c, b.top(), b.bot(), FileChannel.MapMode.READ_ONLY).get(halo);
+        PlaneBands.compute(halo, w, b, op, se, res, 0);
+        MappedByteBuffer out = RawPlanar.map(dst, h, c, b.y0(), b.y1(), FileChannel.MapMode.READ_WRITE);
+        out.put(res);
+    }
+}
@@ -1,8 +1,10 @@
 package cl.proyecto.morfologia.core;
 
+import cl.proyecto.morfologia.metrics.Metrics;
 import cl.proyecto.morfologia.model.EdgePolicy;
 import cl.proyecto.morfologia.model.Operation;
 import cl.proyecto.morfologia.model.StructuringElement;
+import cl.proyecto.morfologia.util.AllocationCounter;
 import cl.proyecto.morfologia.util.ImageIOUtils;
 
 import java.awt.image.BufferedImage;
@@ -18,9 +20,24 @@ import java.util.concurrent.*;
  * - Cada tile incluye un "halo" o solapamiento adicional para que los bordes
  *   de los bloques tengan acceso a los píxeles vecinos necesarios.
  * - Se ejecuta con un pool fijo de hilos.
+ * - Con {@link Tiling#SHARED} los tiles no copian su sub-bloque: leen el canal
+ *   compartido en su lugar (solo lectura) y escriben en filas disjuntas de la salida.
+ *   Los planes descompuestos corren sobre buffers de {@link SePlanner.Scratch} reservados
+ *   antes de lanzar los tiles y reutilizados entre canales y llamadas; los SE que necesitan
+ *   margen neutro copian su sub-bloque a ese buffer (se informa como halo copiado).
  */
 public final class MorphologyParallel {
 
+    /**
+     * Forma en que cada tile accede a su sub-bloque con halo:
+     * - COPY: copia las filas con System.arraycopy (comportamiento original)
+     * - SHARED: lectura directa del canal compartido, sin asignar memoria por tile
+     */
+    public enum Tiling { COPY, SHARED }
+
+    /** Memoria asignada por tile (incluye la copia del sub-bloque en modo COPY). */
+    public static final AllocationCounter TILE_ALLOC = new AllocationCounter();
+
     /**
      * Aplica erosión o dilatación en paralelo a una imagen completa.
      *
@@ -33,6 +50,16 @@ public final class MorphologyParallel {
      */
     public static BufferedImage apply(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy, int threads)
             throws InterruptedException, ExecutionException {
+        return apply(img, op, se, edgePolicy, threads, Tiling.COPY);
+    }
+
+    /**
+     * Igual que {@link #apply(BufferedImage, Operation, boolean[][], EdgePolicy, int)},
+     * eligiendo cómo acceden los tiles a su sub-bloque.
+     */
+    public static BufferedImage apply(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy, int threads,
+                                      Tiling tiling)
+            throws InterruptedException, ExecutionException {
         int w = img.getWidth(), h = img.getHeight();
 
         // Extrae canales RGB de la imagen
@@ -40,9 +67,11 @@ public final class MorphologyParallel {
         ImageIOUtils.splitRGB(img, R,G,B);
 
         // Procesa cada canal en paralelo (pero secuencial por simplicidad)
-        int[][] rOut = parallelChannel(R, op, se, edgePolicy, threads);
-        int[][] gOut = parallelChannel(G, op, se, edgePolicy, threads);
-        int[][] bOut = parallelChannel(B, op, se, edgePolicy, threads);
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+        int[][] rOut = parallelChannel(R, op, se, edgePolicy, threads, tiling);
+        int[][] gOut = parallelChannel(G, op, se, edgePolicy, threads, tiling);
+        int[][] bOut = parallelChannel(B, op, se, edgePolicy, threads, tiling);
+        Metrics.stage("par.compute", t0, 3L * w * h, a0);
 
         // Reconstruye la imagen final
         return ImageIOUtils.mergeRGB(rOut, gOut, bOut);
@@ -53,20 +82,31 @@ public final class MorphologyParallel {
      */
     static int[][] parallelChannel(int[][] channel, Operation op, boolean[][] se, EdgePolicy edgePolicy, int threads)
             throws InterruptedException, ExecutionException {
+        return parallelChannel(channel, op, se, edgePolicy, threads, Tiling.COPY);
+    }
+
+    static int[][] parallelChannel(int[][] channel, Operation op, boolean[][] se, EdgePolicy edgePolicy, int threads,
+                                   Tiling tiling)
+            throws InterruptedException, ExecutionException {
         int h = channel.length, w = channel[0].length;
         int[][] out = new int[h][w];
 
-        // Radios del elemento estructurante
+        // Radio vertical del elemento estructurante (alto del halo)
         int rr = StructuringElement.radiusRow(se);
-        int rc = StructuringElement.radiusCol(se);
 
         // Cálculo del número de tiles (bandas horizontales)
         int tiles = Math.min(threads, Math.max(1, h / Math.max(32, rr*2+1)));
         int rowsPerTile = (int)Math.ceil(h / (double)tiles);
 
+        // Si el SE admite una descomposición más barata, cada tile ejecuta el plan sobre su sub-bloque
+        final SePlanner.Plan plan = SePlanner.planCached(se);
+        final ChannelKernel kernel = plan.isDirect() ? ChannelKernels.of(op, edgePolicy, se) : null;
+
         // Pool de hilos fijo
+        final long section = Metrics.start();
         ExecutorService pool = Executors.newFixedThreadPool(threads);
         List<Future<?>> futures = new ArrayList<>();
+        List<SePlanner.Scratch> scratches = new ArrayList<>();
 
         // Crea tareas para cada tile
         for (int t=0; t<tiles; t++){
@@ -77,63 +117,84 @@ public final class MorphologyParallel {
             int haloTop = Math.max(0, y0 - rr);
             int haloBot = Math.min(h, y1 + rr);
 
-            // Copia del sub-bloque con halo
-            int[][] sub = new int[haloBot - haloTop][w];
-            for (int sy=haloTop; sy<haloBot; sy++) {
-                System.arraycopy(channel[sy], 0, sub[sy - haloTop], 0, w);
+            final int[][] sub;
+            final int baseY;
+            final long copyBytes;
+            if (tiling == Tiling.COPY) {
+                // Copia del sub-bloque con halo
+                long a0 = AllocationCounter.threadBytes();
+                sub = new int[haloBot - haloTop][w];
+                for (int sy=haloTop; sy<haloBot; sy++) {
+                    System.arraycopy(channel[sy], 0, sub[sy - haloTop], 0, w);
+                }
+                copyBytes = AllocationCounter.threadBytes() - a0;
+                TILE_ALLOC.addCopied((long) (haloBot - haloTop) * w * Integer.BYTES);
+                baseY = haloTop;
+            } else if (!plan.isDirect()) {
+                // El plan lee el canal compartido en [haloTop, haloBot) con coordenadas globales
+                sub = channel;
+                copyBytes = 0;
+                baseY = 0;
+            } else {
+                // El kernel directo lee el canal compartido con coordenadas globales
+                sub = channel;
+                copyBytes = 0;
+                baseY = 0;
+            }
+
+            final int tileY0 = y0, tileY1 = y1;
+            final long tilePixels = (long) (y1 - y0) * w;
+            final long submitted = Metrics.start();
+
+            // Tarea paralela (plan descompuesto, sin copias): scratch propio reservado de antemano
+            if (!plan.isDirect() && tiling == Tiling.SHARED) {
+                final SePlanner.Scratch scratch = SePlanner.Scratch.acquire();
+                scratch.reserve(plan, haloBot - haloTop, w);
+                scratches.add(scratch);
+                final int top = haloTop, bot = haloBot;
+                futures.add(pool.submit(() -> {
+                    long t0 = Metrics.start();
+                    long a0 = AllocationCounter.threadBytes();
+                    long padded = SePlanner.executeTile(channel, top, bot, op, plan, out, tileY0, tileY1, scratch);
+                    TILE_ALLOC.addCopied(padded);
+                    TILE_ALLOC.record(AllocationCounter.threadBytes() - a0);
+                    Metrics.tile("par", submitted, t0, tilePixels, a0);
+                }));
+                continue;
             }
 
-            final int tileY0 = y0, tileY1 = y1, baseY = haloTop;
+            // Tarea paralela (plan descompuesto)
+            if (!plan.isDirect()) {
+                futures.add(pool.submit(() -> {
+                    long t0 = Metrics.start();
+                    long a0 = AllocationCounter.threadBytes();
+                    // El halo cubre el radio del SE, así que las filas del tile son exactas
+                    int[][] res = SePlanner.execute(sub, op, plan);
+                    for (int y=tileY0; y<tileY1; y++) {
+                        System.arraycopy(res[y - baseY], 0, out[y], 0, w);
+                    }
+                    TILE_ALLOC.record(copyBytes + AllocationCounter.threadBytes() - a0);
+                    Metrics.tile("par", submitted, t0, tilePixels, a0);
+                }));
+                continue;
+            }
 
-            // Tarea paralela
+            // Tarea paralela: kernel directo especializado (sin ramas por operación ni política)
             futures.add(pool.submit(() -> {
-                for (int y=tileY0; y<tileY1; y++){
-                    for (int x=0; x<w; x++){
-                        // Valor inicial: depende de la operación
-                        int acc = (op==Operation.EROSION) ? 255 : 0;
-
-                        // Recorre el elemento estructurante
-                        for (int dy=-rr; dy<=rr; dy++){
-                            int sy = y + dy - baseY; // coordenada dentro del sub-bloque
-                            int gy = y + dy;         // coordenada global
-                            if (gy < 0 || gy >= channel.length){
-                                // Caso borde
-                                if (edgePolicy == EdgePolicy.PAD) {
-                                    int val = (op==Operation.EROSION) ? 255 : 0;
-                                    for (int dx=-rc; dx<=rc; dx++){
-                                        if (!se[dy+rr][dx+rc]) continue;
-                                        acc = (op==Operation.EROSION) ? Math.min(acc, val) : Math.max(acc, val);
-                                    }
-                                }
-                                continue;
-                            }
-                            for (int dx=-rc; dx<=rc; dx++){
-                                if (!se[dy+rr][dx+rc]) continue;
-                                int gx = x + dx;
-                                if (gx < 0 || gx >= w){
-                                    // Caso borde
-                                    if (edgePolicy == EdgePolicy.PAD) {
-                                        int val = (op==Operation.EROSION) ? 255 : 0;
-                                        acc = (op==Operation.EROSION) ? Math.min(acc, val) : Math.max(acc, val);
-                                    }
-                                    continue;
-                                }
-                                // Valor real del canal
-                                int v = sub[sy][gx];
-                                acc = (op==Operation.EROSION) ? Math.min(acc, v) : Math.max(acc, v);
-                            }
-                        }
-                        // Guarda el resultado en la salida global
-                        out[y][x] = acc;
-                    }
-                }
+                long t0 = Metrics.start();
+                long a0 = AllocationCounter.threadBytes();
+                kernel.apply(sub, baseY, out, tileY0, tileY1, h);
+                TILE_ALLOC.record(copyBytes + AllocationCounter.threadBytes() - a0);
+                Metrics.tile("par", submitted, t0, tilePixels, a0);
             }));
         }
 
         // Espera a que terminen todos los hilos
         for (Future<?> f : futures) f.get();
+        for (SePlanner.Scratch sc : scratches) SePlanner.Scratch.release(sc);
         pool.shutdown();
         pool.awaitTermination(7, TimeUnit.DAYS);
+        Metrics.parallel("par", section, threads);
 
         return out;
     }
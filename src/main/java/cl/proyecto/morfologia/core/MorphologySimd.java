@@ -0,0 +1,98 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+import cl.proyecto.morfologia.util.ImageIOUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Erosión y dilatación con kernels SIMD (Vector API) sobre planos de bytes.
+ *
+ * - Por cada fila de salida y cada posición del SE se carga un segmento completo de
+ *   la fila de entrada y se hace min/max por carril.
+ * - El backend vectorial (jdk.incubator.vector) se compila con el perfil Maven
+ *   "vector" y se detecta en tiempo de ejecución; si no está disponible (o la JVM
+ *   se lanzó sin --add-modules jdk.incubator.vector) se usa un kernel escalar.
+ * - La propiedad -Dmorfologia.simd=false fuerza el kernel escalar.
+ */
+public final class MorphologySimd {
+
+    private static final String VECTOR_KERNEL = "cl.proyecto.morfologia.core.VectorPlaneKernel";
+
+    private static final PlaneKernel KERNEL = detect();
+
+    /** Backend en uso: "vector(...)" o "escalar". */
+    public static String backend() { return KERNEL.name(); }
+
+    public static BufferedImage apply(BufferedImage img, Operation op, boolean[][] se, EdgePolicy edgePolicy) {
+        int w = img.getWidth(), h = img.getHeight();
+        int[] argb = ImageIOUtils.argbPixels(img);
+        byte[] R = new byte[w*h], G = new byte[w*h], B = new byte[w*h];
+        ImageIOUtils.splitPlanes(argb, R,G,B);
+
+        byte[] rOut = applyToPlane(R, w, h, op, se);
+        byte[] gOut = applyToPlane(G, w, h, op, se);
+        byte[] bOut = applyToPlane(B, w, h, op, se);
+
+        return ImageIOUtils.mergePlanes(rOut, gOut, bOut, w, h);
+    }
+
+    public static byte[] applyToPlane(byte[] plane, int w, int h, Operation op, boolean[][] se) {
+        int rr = StructuringElement.radiusRow(se);
+        int rc = StructuringElement.radiusCol(se);
+        final boolean isErosion = (op == Operation.EROSION);
+        MorphologyFused.CompiledSe cse = MorphologyFused.compile(se);
+
+        // Plano con margen neutro y desplazado en 0x80 (orden sin signo -> con signo)
+        int pw = w + 2*rc;
+        byte[] padded = new byte[(h + 2*rr) * pw];
+        Arrays.fill(padded, (byte) ((isErosion ? 255 : 0) ^ 0x80));
+        for (int y=0;y<h;y++){
+            int s = y*w, d = (y+rr)*pw + rc;
+            for (int x=0;x<w;x++) padded[d+x] = (byte) (plane[s+x] ^ 0x80);
+        }
+        byte[] out = new byte[w*h];
+        KERNEL.apply(padded, pw, out, w, h, rr, rc, isErosion, cse.dys(), cse.dxs());
+        return out;
+    }
+
+    private static PlaneKernel detect() {
+        if (!Boolean.parseBoolean(System.getProperty("morfologia.simd", "true"))) return new ScalarPlaneKernel();
+        try {
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return new ScalarPlaneKernel();
+            PlaneKernel k = (PlaneKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+            // Prueba mínima: si el backend no enlaza en esta JVM se descarta
+            k.apply(new byte[9], 3, new byte[1], 1, 1, 1, 1, true, new int[]{0}, new int[]{0});
+            return k;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return new ScalarPlaneKernel();
+        }
+    }
+
+    /** Kernel escalar de respaldo (mismo contrato que el vectorial). */
+    static final class ScalarPlaneKernel implements PlaneKernel {
+        @Override
+        public void apply(byte[] padded, int pw, byte[] dst, int w, int h, int rr, int rc,
+                          boolean isErosion, int[] dys, int[] dxs) {
+            final int n = dys.length;
+            final int[] deltas = new int[n];
+            for (int k=0;k<n;k++) deltas[k] = dys[k]*pw + dxs[k];
+            final int neutral = (isErosion ? 255 : 0) ^ 0x80;
+            for (int y=0;y<h;y++){
+                int base = (y+rr)*pw + rc, o = y*w;
+                for (int x=0;x<w;x++){
+                    int acc = (byte) neutral, p0 = base + x;
+                    if (isErosion) for (int k=0;k<n;k++) acc = Math.min(acc, padded[p0 + deltas[k]]);
+                    else for (int k=0;k<n;k++) acc = Math.max(acc, padded[p0 + deltas[k]]);
+                    dst[o + x] = (byte) (acc ^ 0x80);
+                }
+            }
+        }
+
+        @Override
+        public String name() { return "escalar"; }
+    }
+}
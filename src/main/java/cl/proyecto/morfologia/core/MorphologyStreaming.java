@@ -0,0 +1,155 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+import cl.proyecto.morfologia.util.PngStripReader;
+import cl.proyecto.morfologia.util.PngStripWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Procesamiento por franjas para imágenes que no caben en memoria.
+ *
+ * - El PNG de entrada se decodifica fila por fila ({@link PngStripReader}).
+ * - Se mantiene una ventana circular de 2*rr + franja filas ARGB: las rr filas de halo
+ *   arriba, la franja que se calcula y las rr filas de halo abajo.
+ * - Cada franja se calcula con el kernel fusionado (R, G y B a la vez), opcionalmente
+ *   repartida entre hilos, y se codifica de inmediato ({@link PngStripWriter}).
+ *
+ * La memoria usada es O((2*rr + franja) * ancho), independiente del alto de la imagen.
+ * El resultado es idéntico al de {@link Morphology} para cualquier PNG no entrelazado.
+ */
+public final class MorphologyStreaming {
+
+    public static final int DEFAULT_STRIP = 64;
+
+    /**
+     * Resumen de una ejecución: dimensiones y filas retenidas en memoria.
+     */
+    public record Stats(int width, int height, int windowRows, int strips) {
+        public long windowBytes() { return (long) windowRows * width * Integer.BYTES; }
+    }
+
+    public static Stats process(File in, File out, Operation op, boolean[][] se, EdgePolicy edgePolicy) throws IOException {
+        return process(in, out, op, se, edgePolicy, DEFAULT_STRIP);
+    }
+
+    public static Stats process(File in, File out, Operation op, boolean[][] se, EdgePolicy edgePolicy, int stripRows)
+            throws IOException {
+        return process(in, out, op, se, edgePolicy, stripRows, 1);
+    }
+
+    /**
+     * Con threads > 1 las filas de cada franja se reparten en bandas entre los hilos;
+     * la decodificación y la codificación siguen siendo secuenciales.
+     */
+    public static Stats process(File in, File out, Operation op, boolean[][] se, EdgePolicy edgePolicy, int stripRows,
+                                int threads) throws IOException {
+        if (op.isComposite()) throw new IllegalArgumentException("El modo streaming solo soporta erosión y dilatación: " + op.id());
+        if (stripRows <= 0) throw new IllegalArgumentException("La franja debe tener al menos 1 fila: " + stripRows);
+        MorphologyFused.CompiledSe cse = MorphologyFused.compile(se);
+        int rr = StructuringElement.radiusRow(se);
+
+        try (PngStripReader reader = new PngStripReader(in)) {
+            final int w = reader.width(), h = reader.height();
+            final int strip = Math.min(stripRows, h);
+            // Ventana circular: la fila gy vive en ring[gy % n]
+            final int n = Math.min(h, 2*rr + strip);
+            int[][] ring = new int[n][w];
+            int[][] outRows = new int[strip][w];
+            int loaded = 0, strips = 0;
+            ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+
+            try (PngStripWriter writer = new PngStripWriter(out, w, h)) {
+                for (int y0=0; y0<h; y0+=strip){
+                    int y1 = Math.min(h, y0 + strip);
+                    int need = Math.min(h, y1 + cse.maxDy());
+                    while (loaded < need) reader.readRow(ring[loaded++ % n]);
+
+                    if (pool == null) {
+                        for (int y=y0; y<y1; y++) applyRow(ring, n, w, h, y, outRows[y-y0], op, cse);
+                    } else {
+                        applyStrip(pool, threads, ring, n, w, h, y0, y1, outRows, op, cse);
+                    }
+                    for (int y=y0; y<y1; y++) writer.writeRow(outRows[y-y0]);
+                    strips++;
+                }
+            } finally {
+                if (pool != null) pool.shutdownNow();
+            }
+            return new Stats(w, h, n + strip, strips);
+        }
+    }
+
+    private static void applyStrip(ExecutorService pool, int threads, int[][] ring, int n, int w, int h, int y0, int y1,
+                                   int[][] outRows, Operation op, MorphologyFused.CompiledSe cse) throws IOException {
+        int bands = Math.min(threads, y1 - y0);
+        int rowsPerBand = (int)Math.ceil((y1 - y0) / (double)bands);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int b=0; b<bands; b++){
+            final int by0 = y0 + b*rowsPerBand, by1 = Math.min(y1, by0 + rowsPerBand);
+            if (by0 >= by1) break;
+            futures.add(pool.submit(() -> {
+                for (int y=by0; y<by1; y++) applyRow(ring, n, w, h, y, outRows[y-y0], op, cse);
+            }));
+        }
+        try {
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Procesamiento por franjas interrumpido");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falló una banda de la franja", e.getCause());
+        }
+    }
+
+    /**
+     * Calcula la fila y de la salida a partir de la ventana. Fuera de la imagen se usa
+     * el valor neutro, igual que {@link MorphologyFused#applyRegion}.
+     */
+    static void applyRow(int[][] ring, int n, int w, int h, int y, int[] dst, Operation op, MorphologyFused.CompiledSe cse) {
+        final int[] dys = cse.dys(), dxs = cse.dxs();
+        final int k = dys.length;
+        // Filas de la ventana que aporta cada posición del SE (null si caen fuera)
+        final int[][] rows = new int[k][];
+        for (int i=0;i<k;i++){
+            int sy = y + dys[i];
+            rows[i] = (sy >= 0 && sy < h) ? ring[sy % n] : null;
+        }
+        final boolean isErosion = (op == Operation.EROSION);
+        final int neutral = isErosion ? 255 : 0;
+        final int alpha = 0xFF<<24;
+        final int ix0 = Math.max(0, -cse.minDx()), ix1 = Math.min(w, w - cse.maxDx());
+
+        for (int x=0; x<w; x++){
+            boolean interior = x >= ix0 && x < ix1;
+            int r = neutral, g = neutral, b = neutral;
+            for (int i=0;i<k;i++){
+                int[] row = rows[i];
+                if (row == null) continue;
+                int sx = x + dxs[i];
+                if (!interior && (sx < 0 || sx >= w)) continue;
+                int p = row[sx];
+                if (isErosion) {
+                    r = Math.min(r, (p>>16)&0xFF);
+                    g = Math.min(g, (p>>8)&0xFF);
+                    b = Math.min(b, p&0xFF);
+                } else {
+                    r = Math.max(r, (p>>16)&0xFF);
+                    g = Math.max(g, (p>>8)&0xFF);
+                    b = Math.max(b, p&0xFF);
+                }
+            }
+            dst[x] = alpha | (r<<16) | (g<<8) | b;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bandas de filas con halo sobre planos de bytes (un byte por muestra, fila por fila).
+ *
+ * Una banda calcula sus filas [y0, y1) leyendo [top, bot): el halo es el radio del SE
+ * por cada etapa de la operación, así que las filas interiores salen exactas con los
+ * kernels de planos de {@link MorphologyGray}, también para las compuestas. La usan los
+ * motores que reparten un plano por bandas (asíncrono, mapeado, distribuido) y, con la
+ * misma división, las rutas rápidas en paralelo (también sobre filas empaquetadas).
+ */
+public final class PlaneBands {
+
+    /** Banda [y0, y1) con halo [top, bot). */
+    public record Band(int y0, int y1, int top, int bot) {
+        /** Filas con halo. */
+        public int rows() { return bot - top; }
+
+        /** Filas interiores (las que se devuelven). */
+        public int inner() { return y1 - y0; }
+
+        /** Primera fila interior, contada desde top. */
+        public int offset() { return y0 - top; }
+    }
+
+    private PlaneBands() {}
+
+    /** Filas de halo arriba y abajo de cada banda. */
+    public static int margin(Operation op, boolean[][] se) {
+        return op.stages() * StructuringElement.radiusRow(se);
+    }
+
+    /**
+     * Filas por banda para repartir h filas entre workers ejecutores (hilos o conexiones):
+     * unas 4 bandas por ejecutor para repartir bien la carga, con al menos 32 filas y 4 halos para que el
+     * halo no domine.
+     */
+    public static int rows(int h, int margin, int workers) {
+        return Math.min(h, Math.max(Math.max(32, 4 * margin), (int) Math.ceil(h / (4.0 * workers))));
+    }
+
+    /** Bandas de rows filas que cubren [0, h). */
+    public static List<Band> split(int h, int rows, int margin) {
+        if (rows < 1) throw new IllegalArgumentException("Filas por banda inválidas: " + rows);
+        List<Band> out = new ArrayList<>((h + rows - 1) / rows);
+        for (int y0=0; y0<h; y0+=rows){
+            int y1 = Math.min(h, y0 + rows);
+            out.add(new Band(y0, y1, Math.max(0, y0 - margin), Math.min(h, y1 + margin)));
+        }
+        return out;
+    }
+
+    /**
+     * Calcula una banda ya recortada: halo tiene las b.rows() filas [top, bot) y sus filas
+     * interiores se escriben en dst desde dstOff.
+     */
+    public static void compute(byte[] halo, int w, Band b, Operation op, boolean[][] se, byte[] dst, int dstOff) {
+        byte[] res = MorphologyGray.applyToPlane(halo, w, b.rows(), op, se);
+        System.arraycopy(res, b.offset() * w, dst, dstOff, b.inner() * w);
+    }
+
+    /** Calcula las filas [y0, y1) del plano src (w x h) y las escribe en las mismas filas de dst. */
+    public static void apply(byte[] src, byte[] dst, int w, Band b, Operation op, boolean[][] se) {
+        byte[] halo = new byte[b.rows() * w];
+        System.arraycopy(src, b.top() * w, halo, 0, halo.length);
+        compute(halo, w, b, op, se, dst, b.y0() * w);
+    }
+}
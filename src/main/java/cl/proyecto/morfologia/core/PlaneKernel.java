@@ -0,0 +1,23 @@
+package cl.proyecto.morfologia.core;
+
+/**
+ * Kernel de erosión/dilatación sobre un plano de bytes con margen.
+ *
+ * El plano de entrada viene desplazado (valor ^ 0x80, de modo que el mínimo/máximo
+ * con signo equivale al sin signo) y rodeado por un margen de rr filas y rc columnas
+ * con el valor neutro, así el kernel no necesita chequeos de borde.
+ */
+public interface PlaneKernel {
+
+    /**
+     * @param padded plano de entrada con margen, (h+2rr) filas de pw = w+2rc bytes, desplazado en 0x80
+     * @param dst plano de salida de w*h bytes (valores sin signo, sin desplazar)
+     * @param dys desplazamientos verticales de las posiciones activas del SE
+     * @param dxs desplazamientos horizontales de las posiciones activas del SE
+     */
+    void apply(byte[] padded, int pw, byte[] dst, int w, int h, int rr, int rc,
+               boolean isErosion, int[] dys, int[] dxs);
+
+    /** Nombre del backend (para reportes). */
+    String name();
+}
@@ -0,0 +1,445 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.metrics.Metrics;
+import cl.proyecto.morfologia.util.ImageIOUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reconstrucción morfológica y operadores geodésicos.
+ *
+ * - Reconstrucción por dilatación de un marcador J bajo una máscara I con el algoritmo
+ *   híbrido de Vincent: un barrido en orden de filas, uno en orden inverso y luego una
+ *   cola FIFO que propaga solo desde los píxeles que todavía pueden cambiar a un vecino.
+ *   Cada píxel se visita unas pocas veces, en lugar de una pasada completa por iteración.
+ * - La vecindad sale del SE (sus posiciones distintas del origen); fuera de la imagen no
+ *   hay vecinos, igual que IGNORE/PAD en el resto de los motores.
+ * - La reconstrucción por erosión es la dual (255 - v); rellenar huecos y máximos
+ *   regionales se arman sobre ellas.
+ * - {@link #byDilation(int[], int[], int, int, boolean[][], int)} es la variante paralela:
+ *   bandas de filas con barridos y cola propios, que se envían entre sí los píxeles que
+ *   deben propagarse a través del borde de la banda, por rondas hasta que no quede ninguno.
+ *
+ * Los planos son int[] de w*h valores en orden de filas.
+ */
+public final class Reconstruction {
+
+    /** Bandas por hilo en la variante paralela. */
+    private static final int BANDS_PER_THREAD = 2;
+
+    // ---------------------------------------------------------------- operadores por plano
+
+    /**
+     * Reconstrucción por dilatación de marker bajo mask (el marcador se acota a la máscara).
+     */
+    public static int[] byDilation(int[] marker, int[] mask, int w, int h, boolean[][] se) {
+        return byDilation(marker, mask, w, h, se, 1);
+    }
+
+    /** Variante paralela con threads hilos (1 = secuencial). */
+    public static int[] byDilation(int[] marker, int[] mask, int w, int h, boolean[][] se, int threads) {
+        if (marker.length != w*h || mask.length != w*h) throw new IllegalArgumentException("Marcador y máscara deben tener w*h valores");
+        Neighborhood nb = Neighborhood.of(se);
+        int[] J = new int[w*h];
+        for (int i=0;i<J.length;i++) J[i] = Math.min(marker[i], mask[i]);
+        int bands = Math.min(threads * BANDS_PER_THREAD, h / Math.max(1, 4 * nb.rr));
+        if (threads <= 1 || bands < 2) {
+            Band b = new Band(J, mask, w, h, 0, h, nb);
+            b.sweeps();
+            b.propagate(null);
+        } else {
+            parallel(J, mask, w, h, nb, threads, bands);
+        }
+        return J;
+    }
+
+    /** Reconstrucción por erosión de marker sobre mask (el marcador se acota por debajo). */
+    public static int[] byErosion(int[] marker, int[] mask, int w, int h, boolean[][] se, int threads) {
+        int[] out = byDilation(invert(marker), invert(mask), w, h, se, threads);
+        for (int i=0;i<out.length;i++) out[i] = 255 - out[i];
+        return out;
+    }
+
+    /**
+     * Rellena los huecos: regiones oscuras que no tocan el borde de la imagen. Es la
+     * reconstrucción por erosión de un marcador igual a la imagen en el borde y 255 adentro.
+     */
+    public static int[] fillHoles(int[] plane, int w, int h, boolean[][] se, int threads) {
+        int[] marker = new int[w*h];
+        Arrays.fill(marker, 255);
+        for (int x=0;x<w;x++){ marker[x] = plane[x]; marker[(h-1)*w + x] = plane[(h-1)*w + x]; }
+        for (int y=0;y<h;y++){ marker[y*w] = plane[y*w]; marker[y*w + w-1] = plane[y*w + w-1]; }
+        return byErosion(marker, plane, w, h, se, threads);
+    }
+
+    /**
+     * Máximos regionales: 255 donde f - R(f - 1, f) > 0 (mesetas sin vecinos más altos), 0 en el resto.
+     */
+    public static int[] regionalMaxima(int[] plane, int w, int h, boolean[][] se, int threads) {
+        int[] marker = new int[w*h];
+        for (int i=0;i<marker.length;i++) marker[i] = plane[i] - 1;
+        int[] rec = byDilation(marker, plane, w, h, se, threads);
+        int[] out = new int[w*h];
+        for (int i=0;i<out.length;i++) out[i] = plane[i] - rec[i] > 0 ? 255 : 0;
+        return out;
+    }
+
+    /**
+     * Reconstrucción iterando dilataciones geodésicas elementales hasta que nada cambie.
+     * Solo como referencia para verificar y comparar tiempos: O(pasadas * w*h*|SE|).
+     */
+    public static int[] byDilationNaive(int[] marker, int[] mask, int w, int h, boolean[][] se) {
+        Neighborhood nb = Neighborhood.of(se);
+        int[] J = new int[w*h], next = new int[w*h];
+        for (int i=0;i<J.length;i++) J[i] = Math.min(marker[i], mask[i]);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int y=0;y<h;y++) for (int x=0;x<w;x++){
+                int p = y*w + x, v = J[p];
+                for (int k=0;k<nb.dys.length;k++){
+                    int sy = y + nb.dys[k], sx = x + nb.dxs[k];
+                    if (sy >= 0 && sy < h && sx >= 0 && sx < w) v = Math.max(v, J[sy*w + sx]);
+                }
+                next[p] = Math.min(v, mask[p]);
+                if (next[p] != J[p]) changed = true;
+            }
+            int[] t = J; J = next; next = t;
+        }
+        return J;
+    }
+
+    // ---------------------------------------------------------------- imágenes
+
+    /** Operadores geodésicos disponibles para imágenes. */
+    public enum Geodesic {
+        RECONSTRUCCION_DILATACION("reconstruccion-dilatacion"),
+        RECONSTRUCCION_EROSION("reconstruccion-erosion"),
+        RELLENAR("rellenar"),
+        MAXIMOS("maximos");
+
+        private final String id;
+
+        Geodesic(String id) { this.id = id; }
+
+        public String id() { return id; }
+
+        public boolean needsMarker() { return this == RECONSTRUCCION_DILATACION || this == RECONSTRUCCION_EROSION; }
+
+        public static Geodesic from(String s) {
+            for (Geodesic g : values()) if (g.id.equalsIgnoreCase(s == null ? "" : s.trim())) return g;
+            throw new IllegalArgumentException("Operación geodésica inválida: " + s + " (" + ids() + ")");
+        }
+
+        public static String ids() {
+            StringBuilder sb = new StringBuilder();
+            for (Geodesic g : values()) {
+                if (sb.length() > 0) sb.append('/');
+                sb.append(g.id);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Aplica un operador geodésico canal por canal. Las imágenes grises se procesan en un
+     * solo canal y el resultado es TYPE_BYTE_GRAY; el resto, en R, G y B (ARGB opaco).
+     *
+     * @param marker marcador (solo para las reconstrucciones; mismo tamaño que mask)
+     */
+    public static BufferedImage apply(Geodesic op, BufferedImage mask, BufferedImage marker, boolean[][] se, int threads) {
+        if (op.needsMarker() && marker == null) throw new IllegalArgumentException("La reconstrucción requiere un marcador");
+        if (marker != null && (marker.getWidth() != mask.getWidth() || marker.getHeight() != mask.getHeight()))
+            throw new IllegalArgumentException("Marcador y máscara deben tener el mismo tamaño");
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+        int w = mask.getWidth(), h = mask.getHeight();
+        boolean gray = mask.getType() == BufferedImage.TYPE_BYTE_GRAY && (marker == null || marker.getType() == BufferedImage.TYPE_BYTE_GRAY);
+        int[][] I = planes(mask, gray), M = marker == null ? null : planes(marker, gray);
+        int[][] out = new int[I.length][];
+        for (int c=0;c<I.length;c++){
+            out[c] = switch (op) {
+                case RECONSTRUCCION_DILATACION -> byDilation(M[c], I[c], w, h, se, threads);
+                case RECONSTRUCCION_EROSION -> byErosion(M[c], I[c], w, h, se, threads);
+                case RELLENAR -> fillHoles(I[c], w, h, se, threads);
+                case MAXIMOS -> regionalMaxima(I[c], w, h, se, threads);
+            };
+        }
+        Metrics.stage("geodesic.compute", t0, (long) I.length * w * h, a0);
+        if (gray) {
+            BufferedImage res = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+            byte[] d = ((DataBufferByte) res.getRaster().getDataBuffer()).getData();
+            for (int i=0;i<d.length;i++) d[i] = (byte) out[0][i];
+            return res;
+        }
+        BufferedImage res = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        int[] px = new int[w*h];
+        for (int i=0;i<px.length;i++) px[i] = 0xFF000000 | out[0][i] << 16 | out[1][i] << 8 | out[2][i];
+        res.setRGB(0, 0, w, h, px, 0, w);
+        return res;
+    }
+
+    private static int[][] planes(BufferedImage img, boolean gray) {
+        int w = img.getWidth(), h = img.getHeight();
+        if (gray) {
+            byte[] p = MorphologyGray.pixels(img);
+            int[] g = new int[w*h];
+            for (int i=0;i<g.length;i++) g[i] = p[i] & 0xFF;
+            return new int[][]{g};
+        }
+        int[] argb = ImageIOUtils.argbPixels(ImageIOUtils.toARGB(img));
+        int[] R = new int[w*h], G = new int[w*h], B = new int[w*h];
+        for (int i=0;i<argb.length;i++){
+            R[i] = (argb[i] >> 16) & 0xFF; G[i] = (argb[i] >> 8) & 0xFF; B[i] = argb[i] & 0xFF;
+        }
+        return new int[][]{R, G, B};
+    }
+
+    private static int[] invert(int[] a) {
+        int[] out = new int[a.length];
+        for (int i=0;i<a.length;i++) out[i] = 255 - a[i];
+        return out;
+    }
+
+    // ---------------------------------------------------------------- algoritmo híbrido
+
+    /**
+     * Vecindad derivada del SE: todas las posiciones distintas del origen, separadas en las
+     * que preceden al píxel en orden de filas (barrido directo) y las que lo siguen (inverso).
+     */
+    record Neighborhood(int[] dys, int[] dxs, int[] fwdDy, int[] fwdDx, int[] bwdDy, int[] bwdDx, int rr) {
+        static Neighborhood of(boolean[][] se) {
+            MorphologyFused.CompiledSe c = MorphologyFused.compile(se);
+            List<int[]> all = new ArrayList<>(), fwd = new ArrayList<>(), bwd = new ArrayList<>();
+            for (int k=0;k<c.dys().length;k++){
+                int dy = c.dys()[k], dx = c.dxs()[k];
+                if (dy == 0 && dx == 0) continue;
+                all.add(new int[]{dy, dx});
+                // La propagación va de q = p + o hacia p: en el barrido directo sirven los q anteriores
+                if (dy < 0 || (dy == 0 && dx < 0)) fwd.add(new int[]{dy, dx}); else bwd.add(new int[]{dy, dx});
+            }
+            int rr = Math.max(Math.abs(c.minDy()), Math.abs(c.maxDy()));
+            return new Neighborhood(col(all, 0), col(all, 1), col(fwd, 0), col(fwd, 1), col(bwd, 0), col(bwd, 1), Math.max(1, rr));
+        }
+
+        private static int[] col(List<int[]> l, int i) {
+            int[] out = new int[l.size()];
+            for (int k=0;k<out.length;k++) out[k] = l.get(k)[i];
+            return out;
+        }
+    }
+
+    /**
+     * Filas [y0, y1) de la reconstrucción: barridos y cola FIFO que solo escriben en la banda.
+     * La propagación de p a q usa el SE reflejado: q recibe de p si p = q + o, es decir q = p - o.
+     */
+    static final class Band {
+        final int[] J, I;
+        final int w, h, y0, y1;
+        final Neighborhood nb;
+        final IntQueue queue = new IntQueue();
+
+        Band(int[] J, int[] I, int w, int h, int y0, int y1, Neighborhood nb) {
+            this.J = J; this.I = I; this.w = w; this.h = h; this.y0 = y0; this.y1 = y1; this.nb = nb;
+        }
+
+        /** Barrido directo y barrido inverso; el inverso encola los píxeles que aún pueden propagar. */
+        void sweeps() {
+            for (int y=y0;y<y1;y++) for (int x=0;x<w;x++) update(y, x, nb.fwdDy, nb.fwdDx);
+            for (int y=y1-1;y>=y0;y--) for (int x=w-1;x>=0;x--){
+                int p = update(y, x, nb.bwdDy, nb.bwdDx);
+                if (canPropagate(p, y, x)) queue.add(p);
+            }
+        }
+
+        private int update(int y, int x, int[] dys, int[] dxs) {
+            int p = y*w + x, v = J[p];
+            if (v >= I[p]) return p;
+            for (int k=0;k<dys.length;k++){
+                int sy = y + dys[k], sx = x + dxs[k];
+                if (sy >= y0 && sy < y1 && sx >= 0 && sx < w) v = Math.max(v, J[sy*w + sx]);
+            }
+            J[p] = Math.min(v, I[p]);
+            return p;
+        }
+
+        /** true si algún vecino q de la banda (q = p - o) todavía puede subir con el valor de p. */
+        private boolean canPropagate(int p, int y, int x) {
+            int v = J[p];
+            for (int k=0;k<nb.dys.length;k++){
+                int qy = y - nb.dys[k], qx = x - nb.dxs[k];
+                if (qy < y0 || qy >= y1 || qx < 0 || qx >= w) continue;
+                int q = qy*w + qx;
+                if (J[q] < v && J[q] < I[q]) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Propaga desde la cola. Con outbox != null, los vecinos fuera de la banda no se tocan:
+         * p se anota en outbox para que la banda dueña los actualice en la ronda siguiente.
+         */
+        void propagate(IntQueue outbox) {
+            for (int p; (p = queue.poll()) >= 0; ) {
+                int py = p / w, px = p - py*w, v = J[p];
+                boolean sent = false;
+                for (int k=0;k<nb.dys.length;k++){
+                    int qy = py - nb.dys[k], qx = px - nb.dxs[k];
+                    if (qy < 0 || qy >= h || qx < 0 || qx >= w) continue;
+                    int q = qy*w + qx;
+                    if (qy < y0 || qy >= y1) {
+                        if (outbox != null && !sent) { outbox.add(p); sent = true; }
+                        continue;
+                    }
+                    if (J[q] < v && J[q] < I[q]) {
+                        J[q] = Math.min(v, I[q]);
+                        queue.add(q);
+                    }
+                }
+            }
+        }
+
+        /** Recibe píxeles de otras bandas y actualiza sus vecinos dentro de esta banda. */
+        void receive(int[] seeds, int n) {
+            for (int i=0;i<n;i++){
+                int p = seeds[i], py = p / w, px = p - py*w, v = J[p];
+                for (int k=0;k<nb.dys.length;k++){
+                    int qy = py - nb.dys[k], qx = px - nb.dxs[k];
+                    if (qy < y0 || qy >= y1 || qx < 0 || qx >= w) continue;
+                    int q = qy*w + qx;
+                    if (J[q] < v && J[q] < I[q]) {
+                        J[q] = Math.min(v, I[q]);
+                        queue.add(q);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Variante paralela: cada banda hace sus barridos y su cola; los píxeles cuyo valor debe
+     * cruzar a otra banda se acumulan y se entregan en la ronda siguiente, hasta que en una
+     * ronda nadie envía nada. Cada ronda termina en una barrera (espera de los futures),
+     * así que las bandas leen los valores de las vecinas ya publicados.
+     */
+    private static void parallel(int[] J, int[] I, int w, int h, Neighborhood nb, int threads, int bands) {
+        Band[] bs = new Band[bands];
+        int rows = (h + bands - 1) / bands;
+        for (int b=0;b<bands;b++) bs[b] = new Band(J, I, w, h, b*rows, Math.min(h, (b+1)*rows), nb);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            IntQueue[] outboxes = new IntQueue[bands];
+            for (int b=0;b<bands;b++) outboxes[b] = new IntQueue();
+            List<Future<?>> fs = new ArrayList<>();
+            for (int b=0;b<bands;b++){
+                Band band = bs[b];
+                IntQueue out = outboxes[b];
+                fs.add(pool.submit(() -> { band.sweeps(); band.propagate(out); }));
+            }
+            await(fs);
+            // Tras los barridos, las primeras y últimas rr filas de cada banda son semillas para las vecinas
+            for (int b=0;b<bands;b++){
+                Band band = bs[b];
+                for (int y=band.y0; y<Math.min(band.y1, band.y0 + nb.rr); y++) for (int x=0;x<w;x++) outboxes[b].add(y*w + x);
+                for (int y=Math.max(band.y0 + nb.rr, band.y1 - nb.rr); y<band.y1; y++) for (int x=0;x<w;x++) outboxes[b].add(y*w + x);
+            }
+            while (true) {
+                // Cada banda recibe todo lo enviado (filtra por sus propias filas al actualizar)
+                int[][] inbox = new int[bands][];
+                int[] sizes = new int[bands];
+                boolean any = false;
+                for (int b=0;b<bands;b++){
+                    inbox[b] = collect(outboxes, bs, b);
+                    sizes[b] = inbox[b].length;
+                    any |= sizes[b] > 0;
+                }
+                if (!any) break;
+                for (IntQueue q : outboxes) q.clear();
+                fs.clear();
+                for (int b=0;b<bands;b++){
+                    Band band = bs[b];
+                    int[] seeds = inbox[b];
+                    int n = sizes[b];
+                    IntQueue out = outboxes[b];
+                    if (n == 0) continue;
+                    fs.add(pool.submit(() -> { band.receive(seeds, n); band.propagate(out); }));
+                }
+                await(fs);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Píxeles enviados por las bandas vecinas que pueden afectar filas de la banda b. */
+    private static int[] collect(IntQueue[] outboxes, Band[] bs, int b) {
+        IntQueue seeds = new IntQueue();
+        Band band = bs[b];
+        int rr = band.nb.rr;
+        for (int o=0;o<outboxes.length;o++){
+            if (o == b) continue;
+            IntQueue q = outboxes[o];
+            for (int i=0;i<q.size();i++){
+                int p = q.get(i), py = p / band.w;
+                if (py >= band.y0 - rr && py < band.y1 + rr) seeds.add(p);
+            }
+        }
+        return seeds.toArray();
+    }
+
+    private static void await(List<Future<?>> fs) {
+        try {
+            for (Future<?> f : fs) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconstrucción interrumpida", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** Cola FIFO de enteros sobre un arreglo circular que crece al llenarse. */
+    static final class IntQueue {
+        private int[] a = new int[1024];
+        private int head, size;
+
+        void add(int v) {
+            if (size == a.length) {
+                int[] b = new int[a.length * 2];
+                for (int i=0;i<size;i++) b[i] = a[(head + i) & (a.length - 1)];
+                a = b;
+                head = 0;
+            }
+            a[(head + size) & (a.length - 1)] = v;
+            size++;
+        }
+
+        /** Siguiente valor o -1 si está vacía. */
+        int poll() {
+            if (size == 0) return -1;
+            int v = a[head];
+            head = (head + 1) & (a.length - 1);
+            size--;
+            return v;
+        }
+
+        int size() { return size; }
+
+        int get(int i) { return a[(head + i) & (a.length - 1)]; }
+
+        void clear() { head = 0; size = 0; }
+
+        int[] toArray() {
+            int[] out = new int[size];
+            for (int i=0;i<size;i++) out[i] = get(i);
+            return out;
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Planificador que descompone un elemento estructurante arbitrario en una cadena
+ * de pasadas más baratas.
+ *
+ * Se usa que erosionar por A ⊕ B equivale a erosionar por A y luego por B:
+ * - Cuadrado/rectángulo = línea horizontal ⊕ línea vertical (van Herk).
+ * - Diamante de radio r = cruz ⊕ cruz ⊕ ... (r veces).
+ * - Formas convexas (octágonos, discos) = líneas periódicas en varias direcciones,
+ *   más un resto pequeño.
+ * - Lo que no se pueda factorizar se resuelve como unión de segmentos horizontales,
+ *   cada uno calculado con van Herk (costo por número de filas, no por área).
+ *
+ * Para que la cadena sea exacta en los bordes, se ejecuta sobre un buffer con margen
+ * relleno con el valor neutro (el resultado es idéntico a {@link Morphology#applyDirect}).
+ * Los rectángulos y líneas no necesitan margen (son separables también al recortar).
+ */
+public final class SePlanner {
+
+    /** Paso de la cadena. */
+    public sealed interface Step permits LineStep, MaskStep, RowUnionStep {}
+
+    /** Línea (posiblemente periódica) resuelta con van Herk. */
+    public record LineStep(VanHerk.Pass pass) implements Step {}
+
+    /** Conjunto pequeño de desplazamientos resuelto en forma directa. */
+    public record MaskStep(int[] dy, int[] dx) implements Step {}
+
+    /** Unión de segmentos horizontales: cada uno es (dy, dx0, len). */
+    public record RowUnionStep(List<int[]> runs) implements Step {}
+
+    /**
+     * Plan de ejecución.
+     *
+     * @param steps pasos a aplicar en orden (vacío = recorrido directo)
+     * @param padded si la cadena debe correr sobre un buffer con margen neutro
+     * @param padRow margen vertical necesario
+     * @param padCol margen horizontal necesario
+     * @param cost costo estimado por píxel del plan
+     * @param directCost costo por píxel del recorrido directo (|SE|)
+     */
+    public record Plan(List<Step> steps, boolean padded, int padRow, int padCol, double cost, int directCost) {
+        public boolean isDirect() { return steps.isEmpty(); }
+
+        public String describe() {
+            if (isDirect()) return "directo(" + directCost + ")";
+            StringBuilder sb = new StringBuilder();
+            for (Step s : steps) {
+                if (sb.length() > 0) sb.append(" -> ");
+                if (s instanceof LineStep l) {
+                    VanHerk.Pass p = l.pass();
+                    sb.append(String.format(Locale.ROOT, "linea(%d,%d)[%d..%d]", p.vy(), p.vx(), p.a(), p.b()));
+                } else if (s instanceof MaskStep m) {
+                    sb.append("mascara(").append(m.dy().length).append(")");
+                } else if (s instanceof RowUnionStep u) {
+                    sb.append("filas(").append(u.runs().size()).append(")");
+                }
+            }
+            return String.format(Locale.ROOT, "%s | costo=%.1f vs directo=%d", sb, cost, directCost);
+        }
+    }
+
+    // Costo aproximado por píxel de cada tipo de pasada
+    private static final double LINE_COST = 4;
+    private static final double STEP_OVERHEAD = 2;
+    private static final double PAD_OVERHEAD = 2;
+    private static final int MAX_FACTORS = 64;
+
+    // Direcciones de las líneas periódicas candidatas (paso (vy,vx) con vy>0 o vy==0,vx>0)
+    private static final int[][] DIRECTIONS = {
+            {0,1},{1,0},{1,1},{1,-1},{1,2},{2,1},{1,-2},{2,-1},
+            {0,2},{2,0},{2,2},{2,-2}
+    };
+
+    // Cruz 3x3 como factor (diamantes)
+    private static final int[][] CROSS = {{0,0},{-1,0},{1,0},{0,-1},{0,1}};
+
+    private static final Map<String, Plan> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Igual que {@link #plan(boolean[][])}, pero recuerda los planes ya calculados
+     * (se llama una vez por canal y por tile).
+     */
+    public static Plan planCached(boolean[][] se) {
+        String k = Arrays.deepToString(se);
+        Plan p = CACHE.get(k);
+        if (p == null) {
+            if (CACHE.size() > 64) CACHE.clear();
+            p = plan(se);
+            CACHE.put(k, p);
+        }
+        return p;
+    }
+
+    /**
+     * Construye el plan más barato (según el modelo de costos) para el SE dado.
+     */
+    public static Plan plan(boolean[][] se) {
+        int rr = StructuringElement.radiusRow(se);
+        int rc = StructuringElement.radiusCol(se);
+        Set<Long> pts = new HashSet<>();
+        for (int i=0;i<se.length;i++) for (int j=0;j<se[i].length;j++) if (se[i][j]) pts.add(key(i-rr, j-rc));
+        int direct = pts.size();
+        Plan directPlan = new Plan(List.of(), false, 0, 0, direct, direct);
+        if (direct == 0) return directPlan;
+
+        // 1) Rectángulos y líneas: separables sin margen
+        List<VanHerk.Pass> passes = VanHerk.passes(se);
+        if (passes != null) {
+            List<Step> steps = new ArrayList<>();
+            for (VanHerk.Pass p : passes) steps.add(new LineStep(p));
+            double cost = steps.size() * (LINE_COST + STEP_OVERHEAD);
+            return cost < direct ? new Plan(steps, false, 0, 0, cost, direct) : directPlan;
+        }
+
+        // 2) Factorización voraz en líneas periódicas y cruces
+        List<Step> chain = new ArrayList<>();
+        Set<Long> rest = pts;
+        for (int guard=0; guard<MAX_FACTORS && rest.size() > 1; guard++) {
+            Set<Long> best = null;
+            Step bestStep = null;
+            for (int[] v : DIRECTIONS) {
+                int n = minRun(rest, v[0], v[1]);
+                if (n < 2) continue;
+                Set<Long> q = erodeByLine(rest, v[0], v[1], n);
+                if (best == null || q.size() < best.size()) {
+                    best = q;
+                    bestStep = new LineStep(new VanHerk.Pass(v[0], v[1], 0, n-1));
+                }
+            }
+            Set<Long> q = erode(rest, CROSS);
+            if (!q.isEmpty() && (best == null || q.size() < best.size()) && dilate(q, CROSS).equals(rest)) {
+                best = q;
+                bestStep = maskStep(CROSS);
+            }
+            if (best == null) break;
+            chain.add(bestStep);
+            rest = best;
+        }
+
+        // 3) El resto: un solo punto (traslación), máscara directa o unión de filas
+        Step tail = tailStep(rest);
+        if (tail != null) chain.add(tail);
+
+        Plan chained = finish(chain, direct);
+        Plan rows = finish(List.of(rowUnion(pts)), direct);
+        Plan best = chained.cost() <= rows.cost() ? chained : rows;
+        return best.cost() < direct ? best : directPlan;
+    }
+
+    /**
+     * Ejecuta el plan sobre un canal. Devuelve un canal nuevo de igual tamaño.
+     */
+    public static int[][] execute(int[][] channel, Operation op, Plan plan) {
+        int h = channel.length, w = channel[0].length;
+        int[][] out = new int[h][w];
+        executeTile(channel, 0, h, op, plan, out, 0, h, new Scratch());
+        return out;
+    }
+
+    /**
+     * Ejecuta el plan para las filas [y0, y1) de un tile cuyo sub-bloque con halo son las
+     * filas [top, bot) del canal (coordenadas globales, sin copiar el sub-bloque).
+     *
+     * - Fuera de [top, bot) se usa el valor neutro, igual que {@link #execute} sobre el
+     *   sub-bloque; con halo suficiente las filas [y0, y1) son exactas.
+     * - Los pasos intermedios usan los buffers de scratch y el último escribe directo en
+     *   las filas [y0, y1) de out. Si scratch ya tiene el tamaño (ver {@link Scratch#reserve})
+     *   no se asigna memoria.
+     *
+     * @return bytes de píxeles copiados al buffer con margen (0 si el plan no lo necesita)
+     */
+    public static long executeTile(int[][] channel, int top, int bot, Operation op, Plan plan,
+                                   int[][] out, int y0, int y1, Scratch s) {
+        if (plan.isDirect()) throw new IllegalArgumentException("Plan directo: usar Morphology.applyDirect");
+        final int neutral = op == Operation.EROSION ? 255 : 0;
+        int w = channel[0].length;
+        int pr = plan.padded() ? plan.padRow() : 0, pc = plan.padded() ? plan.padCol() : 0;
+        int h = bot - top + 2*pr, wl = w + 2*pc;
+        s.reserve(plan, bot - top, w);
+
+        // Marco de la entrada: el canal compartido, o el buffer con margen neutro
+        int[][] src = channel;
+        int sy = top, sx = 0;
+        long copied = 0;
+        if (pr > 0 || pc > 0) {
+            for (int y=0;y<h;y++) Arrays.fill(s.pad[y], 0, wl, neutral);
+            for (int y=top;y<bot;y++) System.arraycopy(channel[y], 0, s.pad[y - top + pr], pc, w);
+            copied = (long) (bot - top) * w * Integer.BYTES;
+            src = s.pad;
+            sy = 0;
+        }
+
+        List<Step> steps = plan.steps();
+        for (int i=0;i<steps.size();i++){
+            boolean last = i == steps.size() - 1;
+            if (last) {
+                // out[g] es la fila lógica g - top + pr
+                run(src, sy, sx, out, top - pr, -pc, h, wl, op, steps.get(i),
+                        y0 - top + pr, y1 - top + pr, pc, pc + w, s);
+            } else {
+                int[][] dst = i % 2 == 0 ? s.a : s.b;
+                run(src, sy, sx, dst, 0, 0, h, wl, op, steps.get(i), 0, h, 0, wl, s);
+                src = dst;
+                sy = sx = 0;
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Buffers de trabajo de {@link #executeTile}: crecen según se necesite y se reutilizan
+     * entre tiles, canales y llamadas. No son seguros entre hilos: uno por hilo a la vez.
+     */
+    public static final class Scratch {
+        private static final Queue<Scratch> FREE = new ConcurrentLinkedQueue<>();
+        private static final int MAX_FREE = 2 * Runtime.getRuntime().availableProcessors();
+
+        int[][] pad = new int[0][], a = new int[0][], b = new int[0][], hl = new int[0][];
+        final VanHerk.Buffers lines = new VanHerk.Buffers();
+
+        /** Toma un scratch libre (o uno nuevo). */
+        public static Scratch acquire() {
+            Scratch s = FREE.poll();
+            return s == null ? new Scratch() : s;
+        }
+
+        /** Devuelve el scratch para otros tiles (se guardan hasta 2 por núcleo). */
+        public static void release(Scratch s) {
+            if (FREE.size() < MAX_FREE) FREE.offer(s);
+        }
+
+        /** Deja los buffers listos para un tile de rows filas (con halo) y ancho w. */
+        public void reserve(Plan plan, int rows, int w) {
+            int pr = plan.padded() ? plan.padRow() : 0, pc = plan.padded() ? plan.padCol() : 0;
+            int h = rows + 2*pr, wl = w + 2*pc, n = plan.steps().size();
+            if (pr > 0 || pc > 0) pad = ensure(pad, h, wl);
+            if (n > 1) a = ensure(a, h, wl);
+            if (n > 2) b = ensure(b, h, wl);
+            int maxLen = 1;
+            // Recorridos por índice: se llama en cada tile y no debe asignar iteradores
+            for (int i=0;i<n;i++){
+                Step st = plan.steps().get(i);
+                if (st instanceof LineStep l) maxLen = Math.max(maxLen, l.pass().b() - l.pass().a() + 1);
+                if (st instanceof RowUnionStep u) {
+                    hl = ensure(hl, h, wl);
+                    for (int j=0;j<u.runs().size();j++) maxLen = Math.max(maxLen, u.runs().get(j)[2]);
+                }
+            }
+            lines.ensure(Math.max(h, wl), maxLen);
+        }
+
+        private static int[][] ensure(int[][] m, int h, int w) {
+            if (m.length >= h && (h == 0 || m[0].length >= w)) return m;
+            return new int[Math.max(h, m.length)][Math.max(w, m.length == 0 ? 0 : m[0].length)];
+        }
+    }
+
+    /**
+     * Modo de verificación: compara el resultado del plan con el recorrido directo.
+     *
+     * @throws IllegalStateException si algún píxel difiere
+     */
+    public static void verify(int[][] channel, Operation op, boolean[][] se, EdgePolicy edgePolicy) {
+        Plan p = plan(se);
+        if (p.isDirect()) return;
+        int[][] expected = Morphology.applyDirect(channel, op, se, edgePolicy);
+        int[][] got = execute(channel, op, p);
+        for (int y=0;y<expected.length;y++){
+            for (int x=0;x<expected[y].length;x++){
+                if (expected[y][x] != got[y][x]) {
+                    throw new IllegalStateException(String.format(Locale.ROOT,
+                            "Plan [%s] difiere en (%d,%d): directo=%d plan=%d",
+                            p.describe(), y, x, expected[y][x], got[y][x]));
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- ejecución
+
+    /**
+     * Un paso sobre marcos explícitos: el píxel lógico (y, x) de la imagen h x w es
+     * src[sy + y][sx + x] y su resultado va a dst[dy + y][dx + x], solo dentro de la
+     * ventana [wy0, wy1) x [wx0, wx1).
+     */
+    private static void run(int[][] src, int sy, int sx, int[][] dst, int dy, int dx, int h, int w, Operation op,
+                            Step s, int wy0, int wy1, int wx0, int wx1, Scratch sc) {
+        if (s instanceof LineStep l) {
+            VanHerk.Pass p = l.pass();
+            VanHerk.lineInto(src, sy, sx, dst, dy, dx, h, w, op, p.vy(), p.vx(), p.a(), p.b(), wy0, wy1, wx0, wx1, sc.lines);
+            return;
+        }
+        final boolean isErosion = (op == Operation.EROSION);
+        final int neutral = isErosion ? 255 : 0;
+        for (int y=wy0;y<wy1;y++) Arrays.fill(dst[dy+y], dx+wx0, dx+wx1, neutral);
+        if (s instanceof MaskStep m) {
+            for (int k=0;k<m.dy().length;k++) {
+                fold(dst, dy, dx, src, sy, sx, h, w, m.dy()[k], m.dx()[k], wy0, wy1, wx0, wx1, isErosion);
+            }
+            return;
+        }
+        List<int[]> runs = ((RowUnionStep) s).runs();
+        // Una sola pasada de van Herk por largo distinto de segmento (sin armar colecciones)
+        for (int i=0;i<runs.size();i++){
+            int len = runs.get(i)[2];
+            boolean seen = false;
+            for (int j=0;j<i && !seen;j++) seen = runs.get(j)[2] == len;
+            if (seen) continue;
+            int[][] hl = src;
+            int hy = sy, hx = sx;
+            if (len > 1) {
+                VanHerk.lineInto(src, sy, sx, sc.hl, 0, 0, h, w, op, 0, 1, 0, len-1, 0, h, 0, w, sc.lines);
+                hl = sc.hl;
+                hy = hx = 0;
+            }
+            for (int j=i;j<runs.size();j++){
+                int[] r = runs.get(j);
+                if (r[2] == len) fold(dst, dy, dx, hl, hy, hx, h, w, r[0], r[1], wy0, wy1, wx0, wx1, isErosion);
+            }
+        }
+    }
+
+    // acc(p) = op(acc(p), src(p + (oy,ox))) en la ventana, con neutro fuera de la imagen lógica
+    private static void fold(int[][] acc, int ay, int ax, int[][] src, int sy, int sx, int h, int w, int oy, int ox,
+                             int wy0, int wy1, int wx0, int wx1, boolean isErosion) {
+        int y0 = Math.max(wy0, -oy), y1 = Math.min(wy1, h - oy);
+        int x0 = Math.max(wx0, -ox), x1 = Math.min(wx1, w - ox);
+        for (int y=y0;y<y1;y++){
+            int[] a = acc[ay+y], s = src[sy+y+oy];
+            int da = ax, ds = sx + ox;
+            if (isErosion) for (int x=x0;x<x1;x++) a[da+x] = Math.min(a[da+x], s[ds+x]);
+            else for (int x=x0;x<x1;x++) a[da+x] = Math.max(a[da+x], s[ds+x]);
+        }
+    }
+
+    // ---------------------------------------------------------------- planificación
+
+    private static Plan finish(List<Step> steps, int direct) {
+        // Una cadena necesita margen; la unión de filas también, porque un segmento puede
+        // comenzar fuera de la imagen y aun así cubrir píxeles dentro de ella.
+        boolean padded = steps.size() > 1 || steps.stream().anyMatch(s -> s instanceof RowUnionStep);
+        int pr = 0, pc = 0;
+        double cost = padded ? PAD_OVERHEAD : 0;
+        for (Step s : steps) {
+            int[] reach = reach(s);
+            pr += reach[0];
+            pc += reach[1];
+            cost += stepCost(s) + STEP_OVERHEAD;
+        }
+        return new Plan(List.copyOf(steps), padded, pr, pc, cost, direct);
+    }
+
+    private static double stepCost(Step s) {
+        if (s instanceof LineStep) return LINE_COST;
+        if (s instanceof MaskStep m) return m.dy().length;
+        RowUnionStep u = (RowUnionStep) s;
+        Set<Integer> lens = new HashSet<>();
+        for (int[] r : u.runs()) if (r[2] > 1) lens.add(r[2]);
+        return lens.size() * (LINE_COST + STEP_OVERHEAD) + u.runs().size();
+    }
+
+    // Alcance máximo (|dy|, |dx|) de un paso
+    private static int[] reach(Step s) {
+        int ry = 0, rx = 0;
+        if (s instanceof LineStep l) {
+            VanHerk.Pass p = l.pass();
+            for (int k : new int[]{p.a(), p.b()}) {
+                ry = Math.max(ry, Math.abs(k * p.vy()));
+                rx = Math.max(rx, Math.abs(k * p.vx()));
+            }
+        } else if (s instanceof MaskStep m) {
+            for (int k=0;k<m.dy().length;k++) {
+                ry = Math.max(ry, Math.abs(m.dy()[k]));
+                rx = Math.max(rx, Math.abs(m.dx()[k]));
+            }
+        } else {
+            for (int[] r : ((RowUnionStep) s).runs()) {
+                ry = Math.max(ry, Math.abs(r[0]));
+                rx = Math.max(rx, Math.max(Math.abs(r[1]), Math.abs(r[1] + r[2] - 1)));
+            }
+        }
+        return new int[]{ry, rx};
+    }
+
+    private static Step tailStep(Set<Long> rest) {
+        if (rest.size() == 1 && rest.contains(key(0, 0))) return null;
+        int[][] pts = new int[rest.size()][];
+        int i = 0;
+        for (long k : rest) pts[i++] = new int[]{ky(k), kx(k)};
+        Step mask = maskStep(pts);
+        if (rest.size() <= 3) return mask;
+        Step rows = rowUnion(rest);
+        return stepCost(rows) < stepCost(mask) ? rows : mask;
+    }
+
+    private static MaskStep maskStep(int[][] pts) {
+        int[] dy = new int[pts.length], dx = new int[pts.length];
+        for (int i=0;i<pts.length;i++) { dy[i] = pts[i][0]; dx[i] = pts[i][1]; }
+        return new MaskStep(dy, dx);
+    }
+
+    // Segmentos horizontales maximales del conjunto
+    private static RowUnionStep rowUnion(Set<Long> pts) {
+        TreeMap<Integer, List<Integer>> rows = new TreeMap<>();
+        for (long k : pts) rows.computeIfAbsent(ky(k), y -> new ArrayList<>()).add(kx(k));
+        List<int[]> runs = new ArrayList<>();
+        for (var e : rows.entrySet()) {
+            List<Integer> xs = e.getValue();
+            xs.sort(null);
+            int start = xs.get(0), prev = start;
+            for (int i=1;i<=xs.size();i++) {
+                if (i < xs.size() && xs.get(i) == prev + 1) { prev = xs.get(i); continue; }
+                runs.add(new int[]{e.getKey(), start, prev - start + 1});
+                if (i < xs.size()) start = prev = xs.get(i);
+            }
+        }
+        return new RowUnionStep(runs);
+    }
+
+    /**
+     * Largo mínimo de los tramos maximales del conjunto en la dirección v.
+     * La apertura por una línea de largo n conserva el conjunto si y solo si
+     * todos sus tramos en esa dirección miden al menos n.
+     */
+    private static int minRun(Set<Long> pts, int vy, int vx) {
+        int min = Integer.MAX_VALUE;
+        for (long k : pts) {
+            int y = ky(k), x = kx(k);
+            if (pts.contains(key(y - vy, x - vx))) continue; // no es inicio de tramo
+            int n = 0;
+            while (pts.contains(key(y + n*vy, x + n*vx))) n++;
+            min = Math.min(min, n);
+        }
+        return min;
+    }
+
+    // {q : q + k*v ∈ S para k = 0..n-1}
+    private static Set<Long> erodeByLine(Set<Long> pts, int vy, int vx, int n) {
+        Set<Long> q = new HashSet<>();
+        outer:
+        for (long k : pts) {
+            int y = ky(k), x = kx(k);
+            for (int i=1;i<n;i++) if (!pts.contains(key(y + i*vy, x + i*vx))) continue outer;
+            q.add(k);
+        }
+        return q;
+    }
+
+    private static Set<Long> erode(Set<Long> pts, int[][] f) {
+        Set<Long> q = new HashSet<>();
+        outer:
+        for (long k : pts) {
+            int y = ky(k), x = kx(k);
+            for (int[] d : f) if (!pts.contains(key(y + d[0], x + d[1]))) continue outer;
+            q.add(k);
+        }
+        return q;
+    }
+
+    private static Set<Long> dilate(Set<Long> pts, int[][] f) {
+        Set<Long> q = new HashSet<>();
+        for (long k : pts) for (int[] d : f) q.add(key(ky(k) + d[0], kx(k) + d[1]));
+        return q;
+    }
+
+    private static long key(int y, int x) { return ((long) y << 32) | (x & 0xFFFFFFFFL); }
+    private static int ky(long k) { return (int) (k >> 32); }
+    private static int kx(long k) { return (int) k; }
+}
@@ -0,0 +1,165 @@
+package cl.proyecto.morfologia.core;
+
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Algoritmo de van Herk / Gil-Werman: mínimo/máximo móvil en O(1) por píxel.
+ *
+ * - Un elemento estructurante rectangular se separa en una pasada por filas
+ *   y otra por columnas.
+ * - Una línea (horizontal, vertical o diagonal) de cualquier largo es una sola pasada.
+ * - Cada pasada cuesta ~3 comparaciones por píxel, sin importar el largo de la línea.
+ *
+ * Fuera de la imagen se usa el valor neutro (255 en erosión, 0 en dilatación), que es
+ * exactamente lo que hacen las políticas IGNORE y PAD del algoritmo directo.
+ */
+public final class VanHerk {
+
+    /**
+     * Una pasada lineal: out(p) = min/max de src(p + k*(vy,vx)) para k en [a, b].
+     */
+    public record Pass(int vy, int vx, int a, int b) {}
+
+    /**
+     * Descompone el SE en pasadas lineales si es un rectángulo lleno o una línea diagonal.
+     *
+     * @return lista de pasadas, o null si el SE no admite esta descomposición
+     */
+    public static List<Pass> passes(boolean[][] se) {
+        int rr = StructuringElement.radiusRow(se);
+        int rc = StructuringElement.radiusCol(se);
+        int y0 = Integer.MAX_VALUE, y1 = Integer.MIN_VALUE, x0 = Integer.MAX_VALUE, x1 = Integer.MIN_VALUE;
+        int count = 0;
+        for (int i=0;i<se.length;i++){
+            for (int j=0;j<se[i].length;j++){
+                if (!se[i][j]) continue;
+                y0 = Math.min(y0, i); y1 = Math.max(y1, i);
+                x0 = Math.min(x0, j); x1 = Math.max(x1, j);
+                count++;
+            }
+        }
+        if (count == 0) return null;
+
+        List<Pass> out = new ArrayList<>(2);
+        if (count == (y1-y0+1)*(x1-x0+1)) {
+            // Rectángulo lleno: pasada por filas y luego por columnas
+            if (!(x0 == rc && x1 == rc)) out.add(new Pass(0, 1, x0-rc, x1-rc));
+            if (!(y0 == rr && y1 == rr)) out.add(new Pass(1, 0, y0-rr, y1-rr));
+            return out;
+        }
+        // Línea diagonal contigua (pendiente +1 o -1)
+        int len = y1-y0+1;
+        if (len == x1-x0+1 && count == len) {
+            boolean main = true, anti = true;
+            for (int k=0;k<len;k++){
+                main &= se[y0+k][x0+k];
+                anti &= se[y0+k][x1-k];
+            }
+            // La línea debe pasar por el origen para ser una pasada (k,k) o (k,-k)
+            if (main && (y0-rr) == (x0-rc)) { out.add(new Pass(1, 1, y0-rr, y1-rr)); return out; }
+            if (anti && (y0-rr) == -(x1-rc)) { out.add(new Pass(1, -1, y0-rr, y1-rr)); return out; }
+        }
+        return null;
+    }
+
+    /**
+     * Aplica una secuencia de pasadas a un canal y devuelve un canal nuevo.
+     */
+    public static int[][] apply(int[][] channel, Operation op, List<Pass> passes) {
+        if (passes.isEmpty()) {
+            int[][] copy = new int[channel.length][];
+            for (int y=0;y<channel.length;y++) copy[y] = channel[y].clone();
+            return copy;
+        }
+        int[][] cur = channel;
+        for (Pass p : passes) cur = line(cur, op, p);
+        return cur;
+    }
+
+    /**
+     * Aplica una pasada lineal. Recorre cada cadena de píxeles en la dirección (vy,vx)
+     * y resuelve el mínimo/máximo móvil de la cadena con van Herk.
+     */
+    public static int[][] line(int[][] src, Operation op, Pass p) {
+        int h = src.length, w = src[0].length;
+        int[][] dst = new int[h][w];
+        lineInto(src, 0, 0, dst, 0, 0, h, w, op, p.vy(), p.vx(), p.a(), p.b(), 0, h, 0, w, new Buffers());
+        return dst;
+    }
+
+    /**
+     * Igual que {@link #line} para la pasada (vy, vx, a, b), sobre marcos explícitos y sin
+     * asignar memoria (si los buffers ya tienen el tamaño necesario).
+     *
+     * El píxel lógico (y, x) de la imagen h x w es src[sy + y][sx + x] y su resultado va a
+     * dst[dy + y][dx + x]; solo se escriben los píxeles de la ventana [wy0, wy1) x [wx0, wx1).
+     */
+    static void lineInto(int[][] src, int sy, int sx, int[][] dst, int dy, int dx, int h, int w, Operation op,
+                         int vy, int vx, int a, int b0, int wy0, int wy1, int wx0, int wx1, Buffers b) {
+        final boolean isErosion = (op == Operation.EROSION);
+        final int neutral = isErosion ? 255 : 0;
+        final int len = b0 - a + 1;
+        b.ensure(Math.max(h, w), len);
+        int[] buf = b.buf, res = b.res;
+
+        for (int y=0;y<h;y++){
+            // Pasadas horizontales: las filas fuera de la ventana no se necesitan
+            if (vy == 0 && (y < wy0 || y >= wy1)) continue;
+            for (int x=0;x<w;x++){
+                // Solo se inicia una cadena donde el predecesor cae fuera de la imagen
+                int py = y - vy, px = x - vx;
+                if (py >= 0 && py < h && px >= 0 && px < w) continue;
+                if (vx == 0 && (x < wx0 || x >= wx1)) continue;
+                int cnt = 0;
+                for (int cy=y, cx=x; cy>=0 && cy<h && cx>=0 && cx<w; cy+=vy, cx+=vx) buf[cnt++] = src[sy+cy][sx+cx];
+                run(buf, cnt, a, len, isErosion, neutral, b.g, b.hh, res);
+                cnt = 0;
+                for (int cy=y, cx=x; cy>=0 && cy<h && cx>=0 && cx<w; cy+=vy, cx+=vx, cnt++) {
+                    if (cy >= wy0 && cy < wy1 && cx >= wx0 && cx < wx1) dst[dy+cy][dx+cx] = res[cnt];
+                }
+            }
+        }
+    }
+
+    /** Buffers 1D de {@link #lineInto}; crecen según se necesite y se reutilizan. */
+    static final class Buffers {
+        int[] buf = new int[0], res = new int[0], g = new int[0], hh = new int[0];
+
+        void ensure(int n, int len) {
+            if (buf.length < n) { buf = new int[n]; res = new int[n]; }
+            if (g.length < n + len) { g = new int[n + len]; hh = new int[n + len]; }
+        }
+    }
+
+    /**
+     * Mínimo/máximo móvil 1D: out[i] = op(v[i+a .. i+a+len-1]), neutral fuera de [0,n).
+     * Se usan bloques de largo len: g es el acumulado hacia adelante dentro de cada bloque
+     * y hh el acumulado hacia atrás, de modo que cada ventana es op(hh[i], g[i+len-1]).
+     */
+    static void run(int[] v, int n, int a, int len, boolean isErosion, int neutral,
+                    int[] g, int[] hh, int[] out) {
+        final int m = n + len - 1;
+        int acc = neutral;
+        for (int j=0, k=0; j<m; j++, k++){
+            if (k == len) k = 0;
+            int s = j + a;
+            int x = (s >= 0 && s < n) ? v[s] : neutral;
+            acc = (k == 0) ? x : (isErosion ? Math.min(acc, x) : Math.max(acc, x));
+            g[j] = acc;
+        }
+        acc = neutral;
+        for (int j=m-1; j>=0; j--){
+            int s = j + a;
+            int x = (s >= 0 && s < n) ? v[s] : neutral;
+            acc = (j == m-1 || (j+1) % len == 0) ? x : (isErosion ? Math.min(acc, x) : Math.max(acc, x));
+            hh[j] = acc;
+        }
+        for (int i=0;i<n;i++){
+            out[i] = isErosion ? Math.min(hh[i], g[i+len-1]) : Math.max(hh[i], g[i+len-1]);
+        }
+    }
+}
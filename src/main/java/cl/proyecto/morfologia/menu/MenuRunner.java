@@ -1,17 +1,40 @@
 package cl.proyecto.morfologia.menu;
 
+import cl.proyecto.morfologia.cluster.LocalWorkers;
+import cl.proyecto.morfologia.cluster.TileCoordinator;
+import cl.proyecto.morfologia.cluster.TileWorker;
+import cl.proyecto.morfologia.core.AutoTuner;
+import cl.proyecto.morfologia.core.BatchPipeline;
 import cl.proyecto.morfologia.core.Benchmark;
-import cl.proyecto.morfologia.core.Morphology;
+import cl.proyecto.morfologia.core.Engines;
+import cl.proyecto.morfologia.core.Granulometry;
+import cl.proyecto.morfologia.core.MorphologyAsync;
+import cl.proyecto.morfologia.core.MorphologyIncremental;
+import cl.proyecto.morfologia.core.MorphologyMapped;
 import cl.proyecto.morfologia.core.MorphologyParallel;
+import cl.proyecto.morfologia.core.MorphologySimd;
+import cl.proyecto.morfologia.core.MorphologyStreaming;
+import cl.proyecto.morfologia.core.Reconstruction;
+import cl.proyecto.morfologia.core.SePlanner;
+import cl.proyecto.morfologia.metrics.Metrics;
 import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Mode;
 import cl.proyecto.morfologia.model.Operation;
 import cl.proyecto.morfologia.model.StructuringElement;
+import cl.proyecto.morfologia.server.MorphologyServer;
 import cl.proyecto.morfologia.util.ImageIOUtils;
+import cl.proyecto.morfologia.util.RawPlanar;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Clase que maneja la interacción con el usuario.
@@ -33,9 +56,13 @@ public class MenuRunner {
         Scanner sc = new Scanner(System.in);
         System.out.println("=== Morfología Matemática ===");
 
-        String mode = ask(sc, "Modo [seq/par]: ", "seq", Set.of("seq","par"));
-        String op = ask(sc, "Operación [erosion/dilatacion]: ", "erosion", Set.of("erosion","dilatacion"));
-        int se = Integer.parseInt(ask(sc, "Elemento estructurante [1..5]: ", "1", Set.of("1","2","3","4","5")));
+        Set<String> modes = new HashSet<>();
+        for (Mode m : Mode.values()) modes.add(m.id());
+        String mode = ask(sc, "Modo [" + Mode.ids() + "]: ", "seq", modes);
+        Set<String> ops = new HashSet<>();
+        for (Operation o : Operation.values()) ops.add(o.id());
+        String op = ask(sc, "Operación [" + Operation.ids() + "]: ", "erosion", ops);
+        String se = ask(sc, "Elemento estructurante [1..5 | rect:HxW | hline:N | vline:N]: ", "1", null);
         String edge = ask(sc, "Política de borde [ignore/pad]: ", "ignore", Set.of("ignore","pad"));
         int threads = Integer.parseInt(ask(sc, "Hilos (solo par) [e.g., 8]: ", "8", null));
         String in = ask(sc, "Imagen de entrada (PNG): ", null, null);
@@ -45,7 +72,7 @@ public class MenuRunner {
         Map<String,String> map = new HashMap<>();
         map.put("mode", mode);
         map.put("op", op);
-        map.put("se", Integer.toString(se));
+        map.put("se", se);
         map.put("edge", edge);
         map.put("threads", Integer.toString(threads));
         map.put("in", in);
@@ -57,48 +84,141 @@ public class MenuRunner {
     /** Ejecución a partir de argumentos */
     private static void cli(Map<String, String> map) {
         try {
-            String mode = map.getOrDefault("mode","seq");
+            if (map.containsKey("metrics")) Metrics.enable(true, Boolean.parseBoolean(map.getOrDefault("jfr","false")));
+            if (Boolean.parseBoolean(map.getOrDefault("serve","false"))) {
+                serve(map);
+                return;
+            }
+            if (Boolean.parseBoolean(map.getOrDefault("worker","false"))) {
+                worker(map);
+                return;
+            }
+            Mode mode = Mode.from(map.getOrDefault("mode","seq"));
             Operation op = Operation.from(map.getOrDefault("op","erosion"));
-            int seId = Integer.parseInt(map.getOrDefault("se","1"));
+            String seSpec = map.getOrDefault("se","1");
             EdgePolicy edge = EdgePolicy.from(map.getOrDefault("edge","ignore"));
-            int threads = Integer.parseInt(map.getOrDefault("threads","8"));
+            int threads = Integer.parseInt(map.getOrDefault("threads",
+                    Integer.toString(Runtime.getRuntime().availableProcessors())));
             boolean bench = Boolean.parseBoolean(map.getOrDefault("bench","false"));
+            boolean verifyPlan = Boolean.parseBoolean(map.getOrDefault("verify-plan","false"));
+
+            if (map.containsKey("in-dir")) {
+                batch(map, mode, op, seSpec, edge, threads);
+                reportMetrics(map);
+                return;
+            }
 
             Path in = Path.of(Objects.requireNonNull(map.get("in"), "--in requerido"));
-            Path out = Path.of(Objects.requireNonNull(map.get("out"), "--out requerido"));
             if (!Files.exists(in)) throw new IllegalArgumentException("No existe: " + in);
 
-            BufferedImage img = ImageIOUtils.readPng(in.toFile()); 
-            boolean[][] seMask = StructuringElement.build(seId);
-            String seName = StructuringElement.name(seId);
+            if (map.containsKey("granulometry")) {
+                granulometry(map, in, seSpec, edge, threads);
+                reportMetrics(map);
+                return;
+            }
+
+            Path out = Path.of(Objects.requireNonNull(map.get("out"), "--out requerido"));
+
+            if (Boolean.parseBoolean(map.getOrDefault("stream","false"))) {
+                stream(map, in, out, op, seSpec, edge, threads);
+                reportMetrics(map);
+                return;
+            }
+
+            if (map.containsKey("geodesic")) {
+                geodesic(map, in, out, seSpec, threads);
+                reportMetrics(map);
+                return;
+            }
+
+            if (map.containsKey("workers")) {
+                cluster(map, in, out, op, seSpec);
+                reportMetrics(map);
+                return;
+            }
+
+            if (isRaw(in) || isRaw(out)) {
+                raw(map, in, out, op, seSpec, threads);
+                reportMetrics(map);
+                return;
+            }
+
+            if (map.containsKey("prev-out")) {
+                incremental(map, in, out, mode, op, seSpec, edge, threads);
+                reportMetrics(map);
+                return;
+            }
+
+            // Gris y binaria se conservan para sus rutas rápidas salvo con --rgb
+            boolean rgb = Boolean.parseBoolean(map.getOrDefault("rgb","false"));
+            BufferedImage img = rgb ? ImageIOUtils.readPng(in.toFile()) : ImageIOUtils.readPngNative(in.toFile());
+            boolean[][] seMask = StructuringElement.parse(seSpec);
+            String seName = StructuringElement.name(seSpec);
+
+            String auto = map.get("auto");
+            if (auto != null) {
+                // --auto usa el perfil guardado para esta máquina/imagen/SE o calibra uno nuevo
+                Path profileFile = map.containsKey("auto-profile") ? Path.of(map.get("auto-profile")) : AutoTuner.defaultFile();
+                long c0 = System.nanoTime();
+                AutoTuner.Profile p = AutoTuner.choose(img, op, seMask, edge, profileFile, "recalibrate".equals(auto));
+                p.install();
+                mode = p.mode();
+                threads = p.threads();
+                System.out.printf(Locale.ROOT, "Autoajuste: %s | %s (%.0f ms) -> %s%n", p.describe(),
+                        p.ms() > 0 ? "calibrado" : "perfil guardado", (System.nanoTime() - c0)/1e6, profileFile);
+            }
 
             System.out.printf(Locale.ROOT,
                     "Modo=%s | Op=%s | SE=%s | Edge=%s | Threads=%d | In=%s | Out=%s%n",
-                    mode, op, seName, edge, threads, in, out);
+                    mode.id(), op, seName, edge, threads, in, out);
+            System.out.println("Plan SE: " + SePlanner.planCached(seMask).describe());
+            if (mode == Mode.SIMD) System.out.println("Backend SIMD: " + MorphologySimd.backend());
+            if (Engines.fastPath(img) != null) System.out.println("Ruta rápida: " + Engines.fastPath(img));
+
+            if (verifyPlan) {
+                // Compara la descomposición con el recorrido directo en los tres canales
+                int w = img.getWidth(), h = img.getHeight();
+                int[][] R = new int[h][w], G = new int[h][w], B = new int[h][w];
+                ImageIOUtils.splitRGB(img, R, G, B);
+                // Las compuestas se arman con erosión y dilatación: se verifican ambas
+                Operation[] base = op.isComposite()
+                        ? new Operation[]{Operation.EROSION, Operation.DILATACION} : new Operation[]{op};
+                for (Operation b : base) {
+                    for (int[][] ch : new int[][][]{R, G, B}) SePlanner.verify(ch, b, seMask, edge);
+                }
+                System.out.println("Verificación del plan: OK");
+            }
 
             BufferedImage result;
+            MorphologyParallel.TILE_ALLOC.reset();
 
             if (bench) {
-                Benchmark.Result r = "par".equalsIgnoreCase(mode)
-                        ? Benchmark.runParallel(img, op, seMask, edge, threads)
-                        : Benchmark.runSequential(img, op, seMask, edge);
+                Benchmark.Result r = Benchmark.run(mode, img, op, seMask, edge, threads);
                 result = r.result();
                 System.out.printf(Locale.ROOT,
                         "Tiempo promedio (ms): %.3f (σ=%.3f)  | runs=%d%n",
                         r.avgMs(), r.stdMs(), r.runs());
+            } else if (Boolean.parseBoolean(map.getOrDefault("async","false"))) {
+                long t0 = System.nanoTime();
+                result = async(map, img, op, seMask, edge, threads);
+                System.out.printf(Locale.ROOT, "Tiempo (ms): %.3f%n", (System.nanoTime() - t0)/1e6);
             } else {
                 long t0 = System.nanoTime();
-                if ("par".equalsIgnoreCase(mode)) {
-                    result = MorphologyParallel.apply(img, op, seMask, edge, threads);
-                } else {
-                    result = Morphology.apply(img, op, seMask, edge);
-                }
+                result = Engines.apply(mode, img, op, seMask, edge, threads);
                 long t1 = System.nanoTime();
                 System.out.printf(Locale.ROOT, "Tiempo (ms): %.3f%n", (t1 - t0)/1e6);
             }
 
+            if (MorphologyParallel.TILE_ALLOC.tiles() > 0) {
+                System.out.printf(Locale.ROOT,
+                        "Asignación por tile: %.0f bytes | tiles=%d | halo copiado=%d bytes%n",
+                        MorphologyParallel.TILE_ALLOC.bytesPerTile(), MorphologyParallel.TILE_ALLOC.tiles(),
+                        MorphologyParallel.TILE_ALLOC.copiedBytes());
+            }
+
             ImageIOUtils.writePng(result, out.toFile());
             System.out.println("OK -> " + out.toAbsolutePath());
+            reportMetrics(map);
 
         } catch (Exception ex) {
             System.err.println("ERROR: " + ex.getMessage());
@@ -106,6 +226,285 @@ public class MenuRunner {
         }
     }
 
+    /**
+     * Cálculo por la API asíncrona (--async), con avance por cuartos y plazo opcional (--deadline-ms).
+     */
+    private static BufferedImage async(Map<String, String> map, BufferedImage img, Operation op, boolean[][] seMask,
+                                       EdgePolicy edge, int threads) throws Exception {
+        Duration deadline = map.containsKey("deadline-ms") ? Duration.ofMillis(Long.parseLong(map.get("deadline-ms"))) : null;
+        System.out.println("Async | hilos de trabajo=" + MorphologyAsync.jobThreads() + " | tiles en " + threads + " hilos");
+        MorphologyAsync.Progress progress = (done, total) -> {
+            if (done * 4 / total != (done - 1) * 4 / total) System.out.printf(Locale.ROOT, "Progreso: %d/%d tiles%n", done, total);
+        };
+        try {
+            return MorphologyAsync.shared(threads).submit(img, op, seMask, edge, deadline, progress).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) throw new TimeoutException("Plazo vencido (" + deadline.toMillis() + " ms)");
+            throw e.getCause() instanceof Exception ex ? ex : e;
+        }
+    }
+
+    /**
+     * Imprime (o guarda en --metrics-out) las métricas en JSON o Prometheus (--metrics prom).
+     */
+    private static void reportMetrics(Map<String, String> map) throws Exception {
+        if (!Metrics.enabled()) return;
+        String text = "prom".equalsIgnoreCase(map.get("metrics")) ? Metrics.prometheus() : Metrics.json();
+        String file = map.get("metrics-out");
+        if (file == null) {
+            System.out.println("Métricas:");
+            System.out.println(text);
+        } else {
+            Files.writeString(Path.of(file), text);
+            System.out.println("Métricas -> " + Path.of(file).toAbsolutePath());
+        }
+    }
+
+    /**
+     * Modo servidor: queda escuchando en localhost hasta que se detenga el proceso.
+     */
+    private static void serve(Map<String, String> map) throws Exception {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        MorphologyServer.Config c = new MorphologyServer.Config(
+                Integer.parseInt(map.getOrDefault("port","8080")),
+                Mode.from(map.getOrDefault("mode","engine")),
+                Integer.parseInt(map.getOrDefault("threads", Integer.toString(cpus))),
+                Integer.parseInt(map.getOrDefault("handlers", Integer.toString(Math.max(4, cpus)))),
+                Long.parseLong(map.getOrDefault("cache-mb","64")) << 20,
+                Long.parseLong(map.getOrDefault("batch-px", Integer.toString(512*512))),
+                Long.parseLong(map.getOrDefault("batch-ms","2")),
+                Long.parseLong(map.getOrDefault("max-body-mb","256")) << 20);
+        MorphologyServer server = new MorphologyServer(c);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.printf(Locale.ROOT,
+                "Servidor en http://127.0.0.1:%d/morph | Modo=%s | Threads=%d | Caché=%d MB%n",
+                server.port(), c.mode().id(), c.threads(), c.cacheBytes() >> 20);
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Worker del modo distribuido: atiende tiles del coordinador hasta que se detenga el proceso.
+     */
+    private static void worker(Map<String, String> map) throws Exception {
+        InetAddress bind = map.containsKey("bind") ? InetAddress.getByName(map.get("bind")) : null;
+        TileWorker w = new TileWorker(bind, Integer.parseInt(map.getOrDefault("port","9300")),
+                Long.parseLong(map.getOrDefault("delay-ms","0")));
+        w.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(w::close));
+        System.out.printf(Locale.ROOT, "Worker en %s:%d%n",
+                bind == null ? InetAddress.getLoopbackAddress().getHostAddress() : bind.getHostAddress(), w.port());
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Coordinador del modo distribuido: --workers host:puerto,... o local:N (lanza N workers aquí).
+     */
+    private static void cluster(Map<String, String> map, Path in, Path out, Operation op, String seSpec)
+            throws Exception {
+        String spec = map.get("workers");
+        boolean rgb = Boolean.parseBoolean(map.getOrDefault("rgb","false"));
+        BufferedImage img = rgb ? ImageIOUtils.readPng(in.toFile()) : ImageIOUtils.readPngNative(in.toFile());
+        if (img.getType() != BufferedImage.TYPE_BYTE_GRAY) img = ImageIOUtils.toARGB(img);
+        boolean[][] seMask = StructuringElement.parse(seSpec);
+        LocalWorkers local = null;
+        try {
+            List<InetSocketAddress> workers;
+            if (spec.startsWith("local:")) {
+                List<String> extra = map.containsKey("delay-ms") ? List.of("--delay-ms", map.get("delay-ms")) : List.of();
+                local = LocalWorkers.spawn(Integer.parseInt(spec.substring("local:".length())), extra);
+                workers = local.addresses();
+            } else {
+                workers = TileCoordinator.parseWorkers(spec);
+            }
+            TileCoordinator.Config c = new TileCoordinator.Config(workers,
+                    Integer.parseInt(map.getOrDefault("slots","2")),
+                    Integer.parseInt(map.getOrDefault("tile-rows","0")),
+                    Long.parseLong(map.getOrDefault("timeout-ms","60000")),
+                    Double.parseDouble(map.getOrDefault("slow-factor","4")));
+            System.out.printf(Locale.ROOT, "Distribuido | Op=%s | SE=%s | Workers=%d | Conexiones/worker=%d | In=%s | Out=%s%n",
+                    op, StructuringElement.name(seSpec), workers.size(), c.slots(), in, out);
+            long t0 = System.nanoTime();
+            TileCoordinator.Result r = TileCoordinator.apply(img, op, seMask, c);
+            System.out.printf(Locale.ROOT, "Tiempo (ms): %.3f | tiles=%d | reasignados=%d | repetidos por lentos=%d%n",
+                    (System.nanoTime() - t0)/1e6, r.tiles(), r.reassigned(), r.speculative());
+            for (String lost : r.lostWorkers()) System.out.println("Worker perdido: " + lost);
+            ImageIOUtils.writePng(r.image(), out.toFile());
+            System.out.println("OK -> " + out.toAbsolutePath());
+        } finally {
+            if (local != null) local.close();
+        }
+    }
+
+    /**
+     * Modo lote: procesa todos los PNG de --in-dir y los escribe en --out-dir con el mismo nombre.
+     */
+    private static void batch(Map<String, String> map, Mode mode, Operation op, String seSpec, EdgePolicy edge,
+                              int threads) throws Exception {
+        Path inDir = Path.of(map.get("in-dir"));
+        Path outDir = Path.of(Objects.requireNonNull(map.get("out-dir"), "--out-dir requerido"));
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int ioThreads = Integer.parseInt(map.getOrDefault("io-threads", Integer.toString(Math.max(1, Math.min(4, cpus/2)))));
+        int queue = Integer.parseInt(map.getOrDefault("queue","4"));
+        boolean[][] seMask = StructuringElement.parse(seSpec);
+
+        System.out.printf(Locale.ROOT,
+                "Lote | Modo=%s | Op=%s | SE=%s | Edge=%s | Threads=%d | IO=%d | Cola=%d | In=%s | Out=%s%n",
+                mode.id(), op, StructuringElement.name(seSpec), edge, threads, ioThreads, queue, inDir, outDir);
+        BatchPipeline.Report r = BatchPipeline.run(inDir, outDir,
+                new BatchPipeline.Config(mode, op, seMask, edge, threads, ioThreads, queue));
+        System.out.printf(Locale.ROOT,
+                "Imágenes: %d (fallidas: %d) | Tiempo (s): %.3f | %.2f img/s | %.1f Mpx/s%n",
+                r.images(), r.failed(), r.seconds(), r.imagesPerSecond(), r.megapixelsPerSecond());
+        System.out.printf(Locale.ROOT,
+                "Tiempo acumulado por etapa (ms): lectura=%.1f | cálculo=%.1f | escritura=%.1f%n",
+                r.decodeMs(), r.computeMs(), r.encodeMs());
+    }
+
+    /**
+     * Modo streaming: decodifica, procesa y codifica por franjas sin cargar la imagen completa.
+     */
+    private static void stream(Map<String, String> map, Path in, Path out, Operation op, String seSpec, EdgePolicy edge,
+                               int threads) throws Exception {
+        int strip = Integer.parseInt(map.getOrDefault("strip", Integer.toString(MorphologyStreaming.DEFAULT_STRIP)));
+        boolean[][] seMask = StructuringElement.parse(seSpec);
+        System.out.printf(Locale.ROOT,
+                "Modo=stream | Op=%s | SE=%s | Edge=%s | Threads=%d | Franja=%d | In=%s | Out=%s%n",
+                op, StructuringElement.name(seSpec), edge, threads, strip, in, out);
+        long t0 = System.nanoTime();
+        MorphologyStreaming.Stats st = MorphologyStreaming.process(in.toFile(), out.toFile(), op, seMask, edge, strip, threads);
+        long t1 = System.nanoTime();
+        System.out.printf(Locale.ROOT, "Tiempo (ms): %.3f%n", (t1 - t0)/1e6);
+        System.out.printf(Locale.ROOT, "Imagen %dx%d | franjas=%d | ventana=%d filas (%.1f MB)%n",
+                st.width(), st.height(), st.strips(), st.windowRows(), st.windowBytes() / (1024.0*1024.0));
+        System.out.println("OK -> " + out.toAbsolutePath());
+    }
+
+    /**
+     * Recalculo incremental: parte de --prev-out y recalcula solo lo que cambió respecto de
+     * --prev-in (o las regiones de --dirty "x,y,w,h;x,y,w,h").
+     */
+    private static void incremental(Map<String, String> map, Path in, Path out, Mode mode, Operation op, String seSpec,
+                                    EdgePolicy edge, int threads) throws Exception {
+        boolean[][] seMask = StructuringElement.parse(seSpec);
+        BufferedImage img = ImageIOUtils.readPngNative(in.toFile());
+        BufferedImage prevOut = ImageIOUtils.readPngNative(Path.of(map.get("prev-out")).toFile());
+        List<Rectangle> dirty;
+        if (map.containsKey("dirty")) {
+            dirty = new ArrayList<>();
+            for (String r : map.get("dirty").split(";")) {
+                String[] p = r.trim().split(",");
+                if (p.length != 4) throw new IllegalArgumentException("Región inválida, se espera x,y,w,h: " + r);
+                dirty.add(new Rectangle(Integer.parseInt(p[0].trim()), Integer.parseInt(p[1].trim()),
+                        Integer.parseInt(p[2].trim()), Integer.parseInt(p[3].trim())));
+            }
+        } else {
+            Path prevIn = Path.of(Objects.requireNonNull(map.get("prev-in"), "--prev-in o --dirty requerido"));
+            dirty = MorphologyIncremental.diff(ImageIOUtils.readPngNative(prevIn.toFile()), img);
+        }
+        System.out.printf(Locale.ROOT,
+                "Modo=%s incremental | Op=%s | SE=%s | Edge=%s | Threads=%d | Regiones sucias=%d | In=%s | Out=%s%n",
+                mode.id(), op, StructuringElement.name(seSpec), edge, threads, dirty.size(), in, out);
+        long t0 = System.nanoTime();
+        MorphologyIncremental.Result r = MorphologyIncremental.update(mode, prevOut, img, dirty, op, seMask, edge, threads);
+        long t1 = System.nanoTime();
+        System.out.printf(Locale.ROOT, "Tiempo (ms): %.3f%n", (t1 - t0)/1e6);
+        System.out.printf(Locale.ROOT, "Regiones recalculadas=%d | píxeles=%d (%.2f%% de la imagen)%n",
+                r.regions().size(), r.pixels(), 100.0 * r.pixels() / ((long) img.getWidth() * img.getHeight()));
+        ImageIOUtils.writePng(r.out(), out.toFile());
+        System.out.println("OK -> " + out.toAbsolutePath());
+    }
+
+    /**
+     * Granulometría con escalas 1..N del SE base: imprime el espectro de patrones, lo guarda
+     * como CSV en --out (opcional) y las aperturas de cada escala en --scales-dir (opcional).
+     */
+    private static void granulometry(Map<String, String> map, Path in, String seSpec, EdgePolicy edge, int threads)
+            throws Exception {
+        int scales = Integer.parseInt(map.get("granulometry"));
+        boolean[][] base = StructuringElement.parse(seSpec);
+        Path scalesDir = map.containsKey("scales-dir") ? Path.of(map.get("scales-dir")) : null;
+        BufferedImage img = ImageIOUtils.readPngNative(in.toFile());
+        System.out.printf(Locale.ROOT, "Granulometría | SE base=%s | Escalas=1..%d | Threads=%d | In=%s%n",
+                StructuringElement.name(seSpec), scales, threads, in);
+        long t0 = System.nanoTime();
+        Granulometry.Result r = Granulometry.apply(img, base, scales, edge, threads, scalesDir != null);
+        System.out.printf(Locale.ROOT, "Tiempo (ms): %.3f%n", (System.nanoTime() - t0)/1e6);
+
+        StringBuilder csv = new StringBuilder("escala,masa,espectro,normalizado\n");
+        double[] norm = r.normalized();
+        for (int n=1; n<=scales; n++) {
+            csv.append(String.format(Locale.ROOT, "%d,%d,%d,%.6f\n", n, r.masses()[n], r.spectrum()[n-1], norm[n-1]));
+        }
+        System.out.print(csv);
+        if (map.containsKey("out")) {
+            Files.writeString(Path.of(map.get("out")), csv.toString());
+            System.out.println("OK -> " + Path.of(map.get("out")).toAbsolutePath());
+        }
+        if (scalesDir != null) {
+            Files.createDirectories(scalesDir);
+            for (int n=1; n<=scales; n++) {
+                ImageIOUtils.writePng(r.openings().get(n-1), scalesDir.resolve(String.format(Locale.ROOT, "apertura_%02d.png", n)).toFile());
+            }
+            System.out.println("Aperturas -> " + scalesDir.toAbsolutePath());
+        }
+    }
+
+    /**
+     * Operadores geodésicos (--geodesic): reconstrucción por dilatación/erosión de --marker
+     * bajo --in, rellenar huecos o máximos regionales. La vecindad es el SE de --se.
+     */
+    private static void geodesic(Map<String, String> map, Path in, Path out, String seSpec, int threads)
+            throws Exception {
+        Reconstruction.Geodesic g = Reconstruction.Geodesic.from(map.get("geodesic"));
+        boolean[][] seMask = StructuringElement.parse(seSpec);
+        BufferedImage mask = ImageIOUtils.readPngNative(in.toFile());
+        BufferedImage marker = null;
+        if (g.needsMarker()) {
+            Path m = Path.of(Objects.requireNonNull(map.get("marker"), "--marker requerido para " + g.id()));
+            marker = ImageIOUtils.readPngNative(m.toFile());
+        }
+        System.out.printf(Locale.ROOT, "Geodésica=%s | SE=%s | Threads=%d | In=%s | Out=%s%n",
+                g.id(), StructuringElement.name(seSpec), threads, in, out);
+        long t0 = System.nanoTime();
+        BufferedImage result = Reconstruction.apply(g, mask, marker, seMask, threads);
+        System.out.printf(Locale.ROOT, "Tiempo (ms): %.3f%n", (System.nanoTime() - t0)/1e6);
+        ImageIOUtils.writePng(result, out.toFile());
+        System.out.println("OK -> " + out.toAbsolutePath());
+    }
+
+    private static boolean isRaw(Path p) {
+        return p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".raw");
+    }
+
+    /**
+     * Archivos .raw planares: con --convert convierte PNG <-> raw; con .raw en ambos lados
+     * calcula sobre los archivos mapeados en memoria.
+     */
+    private static void raw(Map<String, String> map, Path in, Path out, Operation op, String seSpec, int threads)
+            throws Exception {
+        long t0 = System.nanoTime();
+        if (Boolean.parseBoolean(map.getOrDefault("convert","false"))) {
+            RawPlanar.Header h;
+            if (isRaw(out) && !isRaw(in)) h = RawPlanar.fromPng(in.toFile(), out.toFile());
+            else if (isRaw(in) && !isRaw(out)) h = RawPlanar.toPng(in.toFile(), out.toFile());
+            else throw new IllegalArgumentException("--convert requiere un PNG y un .raw");
+            System.out.printf(Locale.ROOT, "Conversión %dx%d, %d canal(es) | Tiempo (ms): %.3f%n",
+                    h.width(), h.height(), h.channels(), (System.nanoTime() - t0)/1e6);
+        } else {
+            if (!isRaw(in) || !isRaw(out))
+                throw new IllegalArgumentException("Con archivos .raw use --convert o .raw en entrada y salida");
+            boolean[][] seMask = StructuringElement.parse(seSpec);
+            System.out.printf(Locale.ROOT, "Modo=mapeado | Op=%s | SE=%s | Threads=%d | In=%s | Out=%s%n",
+                    op, StructuringElement.name(seSpec), threads, in, out);
+            MorphologyMapped.Stats st = MorphologyMapped.process(in.toFile(), out.toFile(), op, seMask, threads);
+            System.out.printf(Locale.ROOT, "Tiempo (ms): %.3f%n", (System.nanoTime() - t0)/1e6);
+            System.out.printf(Locale.ROOT, "Imagen %dx%d | canales=%d | bandas por canal=%d%n",
+                    st.width(), st.height(), st.channels(), st.bands());
+        }
+        System.out.println("OK -> " + out.toAbsolutePath());
+    }
+
     /** Parseo de argumentos tipo --clave valor */
     private static Map<String, String> parseArgs(String[] args) {
         Map<String, String> map = new HashMap<>();
@@ -0,0 +1,61 @@
+package cl.proyecto.morfologia.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias con cubetas en potencias de 2 (microsegundos).
+ *
+ * La cubeta i cuenta duraciones en [2^i, 2^(i+1)) µs; la 0 incluye todo lo menor a 2 µs
+ * y la última todo lo mayor. Registrar cuesta un numberOfLeadingZeros y un LongAdder,
+ * sin bloqueo entre hilos.
+ */
+public final class Histogram {
+
+    static final int BUCKETS = 32;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder(), totalNs = new LongAdder();
+
+    public Histogram() {
+        for (int i=0;i<BUCKETS;i++) counts[i] = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        long us = Math.max(1, nanos / 1000);
+        int b = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(us));
+        counts[b].increment();
+        count.increment();
+        totalNs.add(nanos);
+    }
+
+    public long count() { return count.sum(); }
+    public long totalNs() { return totalNs.sum(); }
+    public double meanMs() { long c = count(); return c == 0 ? 0 : totalNs() / 1e6 / c; }
+
+    /** Cantidad en la cubeta i. */
+    public long bucket(int i) { return counts[i].sum(); }
+
+    /** Límite superior de la cubeta i en milisegundos. */
+    public static double upperMs(int i) { return (1L << (i + 1)) / 1000.0; }
+
+    /**
+     * Percentil aproximado (q en [0,1]): límite superior de la cubeta donde el
+     * acumulado alcanza q. El error es a lo más un factor 2.
+     */
+    public double quantileMs(double q) {
+        long total = count();
+        if (total == 0) return 0;
+        long target = (long) Math.ceil(q * total), acc = 0;
+        for (int i=0;i<BUCKETS;i++){
+            acc += bucket(i);
+            if (acc >= target) return upperMs(i);
+        }
+        return upperMs(BUCKETS - 1);
+    }
+
+    public void reset() {
+        for (LongAdder a : counts) a.reset();
+        count.reset();
+        totalNs.reset();
+    }
+}
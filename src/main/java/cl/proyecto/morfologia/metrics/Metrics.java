@@ -0,0 +1,209 @@
+package cl.proyecto.morfologia.metrics;
+
+import cl.proyecto.morfologia.util.AllocationCounter;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de las etapas calientes (lectura/escritura PNG, separación/unión de canales,
+ * cálculo por canal y por tile).
+ *
+ * - Etapas: cantidad, tiempo total y máximo, píxeles procesados y memoria asignada.
+ * - Tiles: histograma de latencia de cálculo y de espera en la cola del pool.
+ * - Secciones paralelas: utilización = tiempo ocupado de los tiles / (tiempo total * hilos).
+ * - Exporta en JSON o en texto Prometheus; opcionalmente emite eventos JFR.
+ *
+ * Apagado (por defecto), cada punto de medición cuesta una lectura volátil: {@link #start()}
+ * devuelve 0 y los métodos de registro lo descartan sin medir nada.
+ */
+public final class Metrics {
+
+    private static volatile boolean enabled;
+    private static volatile boolean jfr;
+
+    private static final Map<String, Stage> STAGES = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> TILES = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> QUEUES = new ConcurrentHashMap<>();
+    private static final Map<String, Parallel> PARALLEL = new ConcurrentHashMap<>();
+
+    /** Acumulados de una etapa. */
+    private static final class Stage {
+        final LongAdder count = new LongAdder(), totalNs = new LongAdder(), pixels = new LongAdder(), bytes = new LongAdder();
+        final LongAccumulator maxNs = new LongAccumulator(Math::max, 0);
+    }
+
+    /** Capacidad (tiempo total * hilos) y tiempo ocupado de una sección paralela. */
+    private static final class Parallel {
+        final LongAdder capacityNs = new LongAdder(), busyNs = new LongAdder(), runs = new LongAdder();
+    }
+
+    /** Activa o desactiva la medición; con jfrEvents además se emiten eventos JFR. */
+    public static void enable(boolean on, boolean jfrEvents) {
+        enabled = on;
+        jfr = on && jfrEvents;
+    }
+
+    public static boolean enabled() { return enabled; }
+
+    /** Marca de inicio: System.nanoTime() si está activo, 0 si no. */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /** Bytes asignados por el hilo actual si está activo, 0 si no. */
+    public static long startAlloc() {
+        return enabled ? AllocationCounter.threadBytes() : 0L;
+    }
+
+    /**
+     * Registra una etapa iniciada en t0 (de {@link #start()}) en el hilo actual.
+     *
+     * @param a0 valor de {@link #startAlloc()} al inicio de la etapa
+     */
+    public static void stage(String name, long t0, long pixels, long a0) {
+        if (t0 == 0) return;
+        long ns = System.nanoTime() - t0;
+        long bytes = Math.max(0, AllocationCounter.threadBytes() - a0);
+        Stage s = STAGES.computeIfAbsent(name, k -> new Stage());
+        s.count.increment();
+        s.totalNs.add(ns);
+        s.maxNs.accumulate(ns);
+        s.pixels.add(pixels);
+        s.bytes.add(bytes);
+        if (jfr) emit(name, ns, pixels, bytes);
+    }
+
+    /**
+     * Registra un tile: su espera en cola (desde submittedAt hasta t0) y su cálculo
+     * (desde t0 hasta ahora). El cálculo cuenta como tiempo ocupado de la sección paralela.
+     */
+    public static void tile(String section, long submittedAt, long t0, long pixels, long a0) {
+        if (t0 == 0) return;
+        long ns = System.nanoTime() - t0;
+        TILES.computeIfAbsent(section, k -> new Histogram()).record(ns);
+        if (submittedAt != 0) QUEUES.computeIfAbsent(section, k -> new Histogram()).record(t0 - submittedAt);
+        PARALLEL.computeIfAbsent(section, k -> new Parallel()).busyNs.add(ns);
+        if (jfr) emit(section + ".tile", ns, pixels, Math.max(0, AllocationCounter.threadBytes() - a0));
+    }
+
+    /** Cierra una sección paralela iniciada en t0 que usó threads hilos. */
+    public static void parallel(String section, long t0, int threads) {
+        if (t0 == 0) return;
+        Parallel p = PARALLEL.computeIfAbsent(section, k -> new Parallel());
+        p.capacityNs.add((System.nanoTime() - t0) * threads);
+        p.runs.increment();
+    }
+
+    public static void reset() {
+        STAGES.clear();
+        TILES.clear();
+        QUEUES.clear();
+        PARALLEL.clear();
+    }
+
+    private static void emit(String name, long ns, long pixels, long bytes) {
+        StageEvent e = new StageEvent();
+        if (!e.isEnabled()) return;
+        e.stage = name;
+        e.elapsed = ns;
+        e.pixels = pixels;
+        e.allocated = bytes;
+        e.commit();
+    }
+
+    // ---------------------------------------------------------------- exportación
+
+    public static String json() {
+        StringBuilder sb = new StringBuilder("{\"stages\":{");
+        boolean first = true;
+        for (Map.Entry<String, Stage> e : new TreeMap<>(STAGES).entrySet()) {
+            Stage s = e.getValue();
+            double totalMs = s.totalNs.sum() / 1e6;
+            if (!first) sb.append(',');
+            first = false;
+            sb.append(String.format(Locale.ROOT,
+                    "\"%s\":{\"count\":%d,\"totalMs\":%.3f,\"maxMs\":%.3f,\"pixels\":%d,\"pixelsPerSec\":%.0f,\"allocatedBytes\":%d}",
+                    e.getKey(), s.count.sum(), totalMs, s.maxNs.get() / 1e6, s.pixels.sum(),
+                    totalMs > 0 ? s.pixels.sum() / (totalMs / 1e3) : 0, s.bytes.sum()));
+        }
+        sb.append("},\"tiles\":{");
+        first = true;
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(TILES).entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            Histogram q = QUEUES.get(e.getKey());
+            sb.append('"').append(e.getKey()).append("\":{\"latency\":").append(histJson(e.getValue()));
+            if (q != null) sb.append(",\"queue\":").append(histJson(q));
+            sb.append('}');
+        }
+        sb.append("},\"utilization\":{");
+        first = true;
+        for (Map.Entry<String, Parallel> e : new TreeMap<>(PARALLEL).entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            sb.append(String.format(Locale.ROOT, "\"%s\":%.3f", e.getKey(), utilization(e.getValue())));
+        }
+        return sb.append("}}").toString();
+    }
+
+    private static String histJson(Histogram h) {
+        return String.format(Locale.ROOT, "{\"count\":%d,\"meanMs\":%.3f,\"p50Ms\":%.3f,\"p95Ms\":%.3f,\"p99Ms\":%.3f}",
+                h.count(), h.meanMs(), h.quantileMs(0.50), h.quantileMs(0.95), h.quantileMs(0.99));
+    }
+
+    /** Formato de texto de Prometheus (tiempos en segundos). */
+    public static String prometheus() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# TYPE morfologia_stage_seconds summary\n");
+        for (Map.Entry<String, Stage> e : new TreeMap<>(STAGES).entrySet()) {
+            String l = "{stage=\"" + e.getKey() + "\"}";
+            Stage s = e.getValue();
+            sb.append(String.format(Locale.ROOT, "morfologia_stage_seconds_sum%s %.9f%n", l, s.totalNs.sum() / 1e9));
+            sb.append(String.format(Locale.ROOT, "morfologia_stage_seconds_count%s %d%n", l, s.count.sum()));
+        }
+        sb.append("# TYPE morfologia_stage_pixels_total counter\n");
+        for (Map.Entry<String, Stage> e : new TreeMap<>(STAGES).entrySet()) {
+            sb.append("morfologia_stage_pixels_total{stage=\"").append(e.getKey()).append("\"} ")
+                    .append(e.getValue().pixels.sum()).append('\n');
+        }
+        sb.append("# TYPE morfologia_stage_allocated_bytes_total counter\n");
+        for (Map.Entry<String, Stage> e : new TreeMap<>(STAGES).entrySet()) {
+            sb.append("morfologia_stage_allocated_bytes_total{stage=\"").append(e.getKey()).append("\"} ")
+                    .append(e.getValue().bytes.sum()).append('\n');
+        }
+        histProm(sb, "morfologia_tile_seconds", TILES);
+        histProm(sb, "morfologia_tile_queue_seconds", QUEUES);
+        sb.append("# TYPE morfologia_thread_utilization gauge\n");
+        for (Map.Entry<String, Parallel> e : new TreeMap<>(PARALLEL).entrySet()) {
+            sb.append(String.format(Locale.ROOT, "morfologia_thread_utilization{section=\"%s\"} %.4f%n",
+                    e.getKey(), utilization(e.getValue())));
+        }
+        return sb.toString();
+    }
+
+    private static void histProm(StringBuilder sb, String metric, Map<String, Histogram> hists) {
+        sb.append("# TYPE ").append(metric).append(" histogram\n");
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(hists).entrySet()) {
+            Histogram h = e.getValue();
+            long acc = 0;
+            for (int i=0;i<Histogram.BUCKETS - 1;i++){
+                acc += h.bucket(i);
+                sb.append(String.format(Locale.ROOT, "%s_bucket{section=\"%s\",le=\"%s\"} %d%n",
+                        metric, e.getKey(), Double.toString(Histogram.upperMs(i) / 1e3), acc));
+            }
+            sb.append(String.format(Locale.ROOT, "%s_bucket{section=\"%s\",le=\"+Inf\"} %d%n", metric, e.getKey(), h.count()));
+            sb.append(String.format(Locale.ROOT, "%s_sum{section=\"%s\"} %.9f%n", metric, e.getKey(), h.totalNs() / 1e9));
+            sb.append(String.format(Locale.ROOT, "%s_count{section=\"%s\"} %d%n", metric, e.getKey(), h.count()));
+        }
+    }
+
+    private static double utilization(Parallel p) {
+        long cap = p.capacityNs.sum();
+        return cap == 0 ? 0 : Math.min(1.0, p.busyNs.sum() / (double) cap);
+    }
+}
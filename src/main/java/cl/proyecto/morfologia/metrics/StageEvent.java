@@ -0,0 +1,36 @@
+package cl.proyecto.morfologia.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Evento JFR emitido por cada etapa o tile medido cuando {@link Metrics} tiene JFR activo.
+ * Se graba con -XX:StartFlightRecording y se ve en JDK Mission Control.
+ */
+@Name("cl.proyecto.morfologia.Stage")
+@Label("Etapa de morfología")
+@Category({"Morfología"})
+@Description("Duración, píxeles y memoria asignada de una etapa o tile")
+@StackTrace(false)
+final class StageEvent extends Event {
+
+    @Label("Etapa")
+    String stage;
+
+    @Label("Duración")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    @Label("Píxeles")
+    long pixels;
+
+    @Label("Memoria asignada")
+    @DataAmount
+    long allocated;
+}
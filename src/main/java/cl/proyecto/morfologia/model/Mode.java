@@ -0,0 +1,39 @@
+package cl.proyecto.morfologia.model;
+
+import java.util.Locale;
+
+/**
+ * Enum que representa el motor de ejecución:
+ * - SEQ: secuencial sobre matrices int[][] por canal
+ * - PAR: paralelo por bandas con halo (cada tile copia su sub-bloque)
+ * - PAR_SHARED: igual que PAR, pero los tiles leen el canal compartido sin copiarlo
+ * - PACKED: secuencial sobre planos byte[] planos leídos del DataBufferInt
+ * - FUSED / FUSED_PAR: kernel fusionado R,G,B sobre píxeles ARGB empaquetados
+ * - SIMD: kernels vectoriales (Vector API) sobre planos byte[], con respaldo escalar
+ * - ENGINE: motor persistente con pool ForkJoin y tiles 2D (robo de trabajo)
+ */
+public enum Mode {
+    SEQ("seq"), PAR("par"), PAR_SHARED("par-shared"), PACKED("packed"), FUSED("fused"), FUSED_PAR("fused-par"), SIMD("simd"), ENGINE("engine");
+
+    private final String id;
+
+    Mode(String id) { this.id = id; }
+
+    public String id() { return id; }
+
+    public static Mode from(String s) {
+        String k = s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+        for (Mode m : values()) if (m.id.equals(k)) return m;
+        return SEQ;
+    }
+
+    /** Ids aceptados, en orden, separados por "/" (para menús y ayudas). */
+    public static String ids() {
+        StringBuilder sb = new StringBuilder();
+        for (Mode m : values()) {
+            if (sb.length() > 0) sb.append('/');
+            sb.append(m.id);
+        }
+        return sb.toString();
+    }
+}
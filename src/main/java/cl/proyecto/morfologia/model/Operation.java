@@ -1,14 +1,58 @@
 package cl.proyecto.morfologia.model;
 
+import java.util.Locale;
+
 /**
  * Enum que representa la operación de morfología:
  * - Erosión
  * - Dilatación
+ * - Compuestas (se calculan como etapas de erosión/dilatación en memoria):
+ *   apertura, cierre, gradiente morfológico y top-hat blanco/negro
  */
 public enum Operation {
-    EROSION, DILATACION;
+    EROSION("erosion"), DILATACION("dilatacion"),
+    APERTURA("apertura"), CIERRE("cierre"), GRADIENTE("gradiente"),
+    TOPHAT_BLANCO("tophat-blanco"), TOPHAT_NEGRO("tophat-negro");
+
+    private final String id;
+
+    Operation(String id) { this.id = id; }
+
+    public String id() { return id; }
+
+    /** true si la operación se arma a partir de erosiones y dilataciones. */
+    public boolean isComposite() {
+        return this != EROSION && this != DILATACION;
+    }
+
+    /** Etapas de erosión/dilatación encadenadas: el halo de un tile es este número de radios del SE. */
+    public int stages() {
+        return switch (this) {
+            case EROSION, DILATACION, GRADIENTE -> 1;
+            case APERTURA, CIERRE, TOPHAT_BLANCO, TOPHAT_NEGRO -> 2;
+        };
+    }
 
     public static Operation from(String s) {
-        return "dilatacion".equalsIgnoreCase(s) ? DILATACION : EROSION;
+        String k = s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+        for (Operation o : values()) if (o.id.equals(k)) return o;
+        return switch (k) {
+            case "opening" -> APERTURA;
+            case "closing" -> CIERRE;
+            case "gradient" -> GRADIENTE;
+            case "tophat", "white-tophat" -> TOPHAT_BLANCO;
+            case "bothat", "black-tophat" -> TOPHAT_NEGRO;
+            default -> EROSION;
+        };
+    }
+
+    /** Ids aceptados, en orden, separados por "/" (para menús y ayudas). */
+    public static String ids() {
+        StringBuilder sb = new StringBuilder();
+        for (Operation o : values()) {
+            if (sb.length() > 0) sb.append('/');
+            sb.append(o.id);
+        }
+        return sb.toString();
     }
 }
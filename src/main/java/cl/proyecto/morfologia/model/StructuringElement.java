@@ -28,6 +28,116 @@ public final class StructuringElement {
         };
     }
 
+    /**
+     * Construye un SE a partir de una especificación de texto:
+     * - "1".."5": elementos predefinidos (ver {@link #build(int)})
+     * - "rect:HxW": rectángulo lleno de H filas por W columnas
+     * - "hline:N" / "vline:N": línea horizontal / vertical de largo N
+     * - "dline:N" / "aline:N": línea diagonal (\) / antidiagonal (/) de largo N
+     * - "diamond:R": diamante (|i|+|j| <= R) de radio R
+     * - "disk:R": disco euclidiano (i²+j² <= R²) de radio R
+     */
+    public static boolean[][] parse(String spec) {
+        String s = spec.trim().toLowerCase(java.util.Locale.ROOT);
+        int colon = s.indexOf(':');
+        if (colon < 0) return build(Integer.parseInt(s));
+        String kind = s.substring(0, colon), arg = s.substring(colon + 1);
+        return switch (kind) {
+            case "rect" -> {
+                int x = arg.indexOf('x');
+                if (x < 0) throw new IllegalArgumentException("SE inválido, se espera rect:HxW: " + spec);
+                yield rect(positive(arg.substring(0, x), spec), positive(arg.substring(x + 1), spec));
+            }
+            case "hline" -> rect(1, positive(arg, spec));
+            case "vline" -> rect(positive(arg, spec), 1);
+            case "dline" -> diagonal(positive(arg, spec), false);
+            case "aline" -> diagonal(positive(arg, spec), true);
+            case "diamond" -> diamond(positive(arg, spec));
+            case "disk" -> disk(positive(arg, spec));
+            default -> throw new IllegalArgumentException("SE inválido: " + spec);
+        };
+    }
+
+    public static String name(String spec) {
+        String s = spec.trim().toLowerCase(java.util.Locale.ROOT);
+        if (s.indexOf(':') < 0) return name(Integer.parseInt(s));
+        boolean[][] m = parse(s);
+        int count = 0;
+        for (boolean[] row : m) for (boolean b : row) if (b) count++;
+        return s + "(" + m.length + "x" + m[0].length + "," + count + "px)";
+    }
+
+    /**
+     * Rectángulo lleno de h x w. Si un lado es par, la matriz se agranda a impar
+     * y el rectángulo queda desplazado media celda hacia arriba/izquierda.
+     */
+    public static boolean[][] rect(int h, int w) {
+        boolean[][] m = new boolean[2*(h/2)+1][2*(w/2)+1];
+        for (int i=0;i<h;i++) for (int j=0;j<w;j++) m[i][j]=true;
+        return m;
+    }
+
+    /** Línea diagonal de largo n centrada (anti = pendiente positiva, "/"). */
+    public static boolean[][] diagonal(int n, boolean anti) {
+        int size = 2*(n/2)+1;
+        boolean[][] m = new boolean[size][size];
+        for (int k=0;k<n;k++) m[k][anti ? size-1-k : k] = true;
+        return m;
+    }
+
+    /**
+     * SE reflejado respecto del origen (rotación de 180°). Las operaciones compuestas
+     * lo usan en la segunda etapa para que apertura y cierre sean idempotentes también
+     * con SE asimétricos.
+     */
+    public static boolean[][] reflect(boolean[][] se) {
+        int h = se.length, w = se[0].length;
+        boolean[][] m = new boolean[h][w];
+        for (int i=0;i<h;i++) for (int j=0;j<w;j++) m[h-1-i][w-1-j] = se[i][j];
+        return m;
+    }
+
+    /**
+     * Suma de Minkowski a ⊕ b (ambos de lados impares, centrados). La erosión por a ⊕ b
+     * es la erosión por a seguida de la erosión por b.
+     */
+    public static boolean[][] minkowski(boolean[][] a, boolean[][] b) {
+        int ha = a.length, wa = a[0].length, hb = b.length, wb = b[0].length;
+        if (ha % 2 == 0 || wa % 2 == 0 || hb % 2 == 0 || wb % 2 == 0)
+            throw new IllegalArgumentException("La suma de Minkowski requiere SE de lados impares");
+        boolean[][] m = new boolean[ha+hb-1][wa+wb-1];
+        for (int i=0;i<ha;i++) for (int j=0;j<wa;j++) {
+            if (!a[i][j]) continue;
+            for (int k=0;k<hb;k++) for (int l=0;l<wb;l++) if (b[k][l]) m[i+k][j+l] = true;
+        }
+        return m;
+    }
+
+    /** Diamante de radio r: |i|+|j| <= r. */
+    public static boolean[][] diamond(int r) {
+        boolean[][] m = new boolean[2*r+1][2*r+1];
+        for (int i=-r;i<=r;i++) for (int j=-r;j<=r;j++) m[i+r][j+r] = Math.abs(i) + Math.abs(j) <= r;
+        return m;
+    }
+
+    /** Disco euclidiano de radio r: i²+j² <= r². */
+    public static boolean[][] disk(int r) {
+        boolean[][] m = new boolean[2*r+1][2*r+1];
+        for (int i=-r;i<=r;i++) for (int j=-r;j<=r;j++) m[i+r][j+r] = i*i + j*j <= r*r;
+        return m;
+    }
+
+    private static int positive(String s, String spec) {
+        int v;
+        try {
+            v = Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("SE inválido: " + spec);
+        }
+        if (v < 1) throw new IllegalArgumentException("SE inválido (tamaño < 1): " + spec);
+        return v;
+    }
+
     private static boolean[][] square3() {
         boolean[][] m = new boolean[3][3];
         for (int i=0;i<3;i++) for (int j=0;j<3;j++) m[i][j]=true;
@@ -0,0 +1,136 @@
+package cl.proyecto.morfologia.server;
+
+import cl.proyecto.morfologia.core.Engines;
+import cl.proyecto.morfologia.core.MorphologyEngine;
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Mode;
+import cl.proyecto.morfologia.model.Operation;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Agrupa peticiones pequeñas que llegan casi al mismo tiempo.
+ *
+ * - Las imágenes grandes se calculan de inmediato en el hilo de la petición (el motor ya
+ *   las reparte entre todos los hilos).
+ * - Las pequeñas se encolan; un despachador espera hasta windowMs (o hasta juntar
+ *   maxBatchPixels) y procesa juntas las que comparten operación, SE y borde. Con el
+ *   modo engine sus tiles compiten en el mismo pool ({@link MorphologyEngine#applyAll}),
+ *   en lugar de que cada imagen pequeña deje hilos ociosos.
+ */
+public final class MicroBatcher implements AutoCloseable {
+
+    /** Peticiones que pueden calcularse juntas. */
+    private record Key(Operation op, String se, EdgePolicy edgePolicy) {}
+
+    private record Job(Key key, boolean[][] se, BufferedImage img, CompletableFuture<BufferedImage> result) {}
+
+    private final Mode mode;
+    private final int threads;
+    private final long smallPixels, maxBatchPixels;
+    private final long windowNanos;
+    private final BlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private final AtomicLong batches = new AtomicLong(), batchedImages = new AtomicLong();
+    private volatile boolean closed;
+
+    public MicroBatcher(Mode mode, int threads, long smallPixels, long maxBatchPixels, long windowMs) {
+        this.mode = mode;
+        this.threads = threads;
+        this.smallPixels = smallPixels;
+        this.maxBatchPixels = maxBatchPixels;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.dispatcher = new Thread(this::loop, "morfologia-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Calcula la operación; las imágenes pequeñas pueden esperar hasta windowMs a otras.
+     */
+    public BufferedImage apply(BufferedImage img, Operation op, boolean[][] se, String seKey, EdgePolicy edgePolicy)
+            throws Exception {
+        if (closed) throw new IllegalStateException("El servidor se está cerrando");
+        if ((long) img.getWidth() * img.getHeight() > smallPixels) {
+            return Engines.apply(mode, img, op, se, edgePolicy, threads);
+        }
+        Job j = new Job(new Key(op, seKey, edgePolicy), se, img, new CompletableFuture<>());
+        queue.put(j);
+        try {
+            return j.result().get();
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw e.getCause() instanceof Exception ex ? ex : e;
+        }
+    }
+
+    public long batches() { return batches.get(); }
+    public long batchedImages() { return batchedImages.get(); }
+
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        for (Job j; (j = queue.poll()) != null; ) j.result().completeExceptionally(new IllegalStateException("Servidor cerrado"));
+    }
+
+    private void loop() {
+        while (!closed) {
+            Job first;
+            try {
+                first = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            // Junta lo que llegue durante la ventana, agrupado por clave
+            Map<Key, List<Job>> groups = new LinkedHashMap<>();
+            groups.computeIfAbsent(first.key(), k -> new ArrayList<>()).add(first);
+            long px = pixels(first), deadline = System.nanoTime() + windowNanos;
+            try {
+                while (px < maxBatchPixels) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) break;
+                    Job j = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (j == null) break;
+                    groups.computeIfAbsent(j.key(), k -> new ArrayList<>()).add(j);
+                    px += pixels(j);
+                }
+            } catch (InterruptedException e) {
+                closed = true;
+            }
+            for (List<Job> g : groups.values()) run(g);
+        }
+    }
+
+    private void run(List<Job> jobs) {
+        batches.incrementAndGet();
+        batchedImages.addAndGet(jobs.size());
+        Job first = jobs.get(0);
+        Operation op = first.key().op();
+        EdgePolicy edge = first.key().edgePolicy();
+        try {
+            if (mode == Mode.ENGINE && !op.isComposite() && jobs.size() > 1) {
+                List<BufferedImage> imgs = new ArrayList<>(jobs.size());
+                for (Job j : jobs) imgs.add(j.img());
+                List<BufferedImage> out = MorphologyEngine.shared(threads).applyAll(imgs, op, first.se(), edge);
+                for (int i=0;i<jobs.size();i++) jobs.get(i).result().complete(out.get(i));
+            } else {
+                for (Job j : jobs) j.result().complete(Engines.apply(mode, j.img(), op, j.se(), edge, threads));
+            }
+        } catch (Throwable t) {
+            for (Job j : jobs) j.result().completeExceptionally(t);
+        }
+    }
+
+    private static long pixels(Job j) {
+        return (long) j.img().getWidth() * j.img().getHeight();
+    }
+}
@@ -0,0 +1,167 @@
+package cl.proyecto.morfologia.server;
+
+import cl.proyecto.morfologia.core.Engines;
+import cl.proyecto.morfologia.metrics.Metrics;
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Mode;
+import cl.proyecto.morfologia.model.Operation;
+import cl.proyecto.morfologia.model.StructuringElement;
+import cl.proyecto.morfologia.util.ImageIOUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servidor HTTP local (solo 127.0.0.1) que mantiene el motor caliente entre peticiones.
+ *
+ * - POST /morph?op=erosion&se=5&edge=ignore con el PNG en el cuerpo; responde el PNG
+ *   resultante. La cabecera X-Cache indica HIT o MISS.
+ * - GET /stats: contadores en JSON (peticiones, caché, lotes).
+ * - GET /metrics: métricas de etapas en formato Prometheus (si se activaron con --metrics).
+ * - GET /health: "OK".
+ *
+ * Las peticiones pasan por la caché LRU ({@link ResultCache}) y luego por el agrupador
+ * de peticiones pequeñas ({@link MicroBatcher}).
+ */
+public final class MorphologyServer implements AutoCloseable {
+
+    /**
+     * Configuración del servidor.
+     *
+     * @param smallPixels   imágenes de hasta este tamaño se agrupan con otras
+     * @param batchWindowMs espera máxima para formar un lote
+     * @param maxBodyBytes  tamaño máximo del PNG recibido
+     */
+    public record Config(int port, Mode mode, int threads, int handlerThreads, long cacheBytes,
+                         long smallPixels, long batchWindowMs, long maxBodyBytes) {}
+
+    private final Config config;
+    private final HttpServer http;
+    private final ExecutorService handlers;
+    private final ResultCache cache;
+    private final MicroBatcher batcher;
+    private final AtomicLong requests = new AtomicLong(), errors = new AtomicLong();
+
+    public MorphologyServer(Config c) throws IOException {
+        this.config = c;
+        this.cache = new ResultCache(c.cacheBytes());
+        this.batcher = new MicroBatcher(c.mode(), c.threads(), c.smallPixels(), 8 * c.smallPixels(), c.batchWindowMs());
+        this.handlers = Executors.newFixedThreadPool(c.handlerThreads());
+        this.http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), c.port()), 0);
+        http.setExecutor(handlers);
+        http.createContext("/morph", this::morph);
+        http.createContext("/stats", this::stats);
+        http.createContext("/metrics", ex -> send(ex, 200, "text/plain; version=0.0.4",
+                Metrics.prometheus().getBytes(StandardCharsets.UTF_8)));
+        http.createContext("/health", ex -> send(ex, 200, "text/plain", "OK".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** Calienta el motor (pool y JIT) y empieza a aceptar peticiones. */
+    public void start() throws Exception {
+        BufferedImage warm = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+        boolean[][] se = StructuringElement.build(1);
+        for (int i=0;i<20;i++) {
+            Engines.apply(config.mode(), warm, i % 2 == 0 ? Operation.EROSION : Operation.DILATACION, se,
+                    EdgePolicy.IGNORE, config.threads());
+        }
+        http.start();
+    }
+
+    public int port() {
+        return http.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        http.stop(0);
+        batcher.close();
+        handlers.shutdownNow();
+    }
+
+    private void morph(HttpExchange ex) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (!"POST".equals(ex.getRequestMethod())) {
+                send(ex, 405, "text/plain", "Usar POST con el PNG en el cuerpo".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            Map<String, String> q = query(ex.getRequestURI().getRawQuery());
+            Operation op = Operation.from(q.getOrDefault("op", "erosion"));
+            String seSpec = q.getOrDefault("se", "1").trim().toLowerCase(Locale.ROOT);
+            EdgePolicy edge = EdgePolicy.from(q.getOrDefault("edge", "ignore"));
+            boolean[][] se = StructuringElement.parse(seSpec);
+            byte[] body = readBody(ex.getRequestBody(), config.maxBodyBytes());
+
+            long t0 = System.nanoTime();
+            ResultCache.Key key = new ResultCache.Key(ResultCache.sha256(body), op, seSpec, edge);
+            byte[] png = cache.get(key);
+            String status = "HIT";
+            if (png == null) {
+                status = "MISS";
+                BufferedImage img = ImageIOUtils.readPng(body);
+                BufferedImage out = batcher.apply(img, op, se, seSpec, edge);
+                png = ImageIOUtils.pngBytes(out);
+                cache.put(key, png);
+            }
+            ex.getResponseHeaders().set("X-Cache", status);
+            ex.getResponseHeaders().set("X-Tiempo-Ms", String.format(Locale.ROOT, "%.3f", (System.nanoTime() - t0) / 1e6));
+            send(ex, 200, "image/png", png);
+        } catch (IllegalArgumentException e) {
+            errors.incrementAndGet();
+            send(ex, 400, "text/plain", String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            send(ex, 500, "text/plain", ("ERROR: " + e.getMessage()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void stats(HttpExchange ex) throws IOException {
+        String json = String.format(Locale.ROOT,
+                "{\"requests\":%d,\"errors\":%d,\"cache\":{\"entries\":%d,\"bytes\":%d,\"hits\":%d,\"misses\":%d,"
+                        + "\"evictions\":%d},\"batches\":%d,\"batchedImages\":%d,\"mode\":\"%s\",\"threads\":%d}",
+                requests.get(), errors.get(), cache.size(), cache.bytes(), cache.hits(), cache.misses(),
+                cache.evictions(), batcher.batches(), batcher.batchedImages(), config.mode().id(), config.threads());
+        send(ex, 200, "application/json", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange ex, int code, String type, byte[] body) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", type);
+        ex.sendResponseHeaders(code, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static byte[] readBody(InputStream in, long max) throws IOException {
+        byte[] data = in.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, max + 1));
+        if (data.length > max) throw new IllegalArgumentException("Imagen demasiado grande (máximo " + max + " bytes)");
+        if (data.length == 0) throw new IllegalArgumentException("Cuerpo vacío: se esperaba un PNG");
+        return data;
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> map = new HashMap<>();
+        if (raw == null || raw.isEmpty()) return map;
+        for (String kv : raw.split("&")) {
+            int i = kv.indexOf('=');
+            String k = i < 0 ? kv : kv.substring(0, i);
+            String v = i < 0 ? "" : kv.substring(i + 1);
+            map.put(URLDecoder.decode(k, StandardCharsets.UTF_8), URLDecoder.decode(v, StandardCharsets.UTF_8));
+        }
+        return map;
+    }
+}
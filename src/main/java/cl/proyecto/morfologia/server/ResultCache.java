@@ -0,0 +1,68 @@
+package cl.proyecto.morfologia.server;
+
+import cl.proyecto.morfologia.model.EdgePolicy;
+import cl.proyecto.morfologia.model.Operation;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché LRU de resultados ya codificados como PNG, acotada por bytes.
+ *
+ * La clave es (SHA-256 de la imagen de entrada, operación, SE, política de borde), así que
+ * una petición repetida devuelve los bytes guardados sin decodificar ni recalcular.
+ */
+public final class ResultCache {
+
+    /** Clave de la caché; se es la especificación normalizada del SE. */
+    public record Key(String imageHash, Operation op, String se, EdgePolicy edgePolicy) {}
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, byte[]> map = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private long hits, misses, evictions;
+
+    public ResultCache(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("Tamaño de caché inválido: " + maxBytes);
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized byte[] get(Key k) {
+        byte[] v = map.get(k);
+        if (v == null) misses++; else hits++;
+        return v;
+    }
+
+    public synchronized void put(Key k, byte[] v) {
+        if (v.length > maxBytes) return; // no cabe: no se guarda
+        byte[] old = map.put(k, v);
+        if (old != null) bytes -= old.length;
+        bytes += v.length;
+        // Expulsa los menos usados recientemente hasta volver al límite
+        for (Iterator<Map.Entry<Key, byte[]>> it = map.entrySet().iterator(); bytes > maxBytes && it.hasNext(); ) {
+            Map.Entry<Key, byte[]> e = it.next();
+            bytes -= e.getValue().length;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized int size() { return map.size(); }
+    public synchronized long bytes() { return bytes; }
+    public synchronized long hits() { return hits; }
+    public synchronized long misses() { return misses; }
+    public synchronized long evictions() { return evictions; }
+
+    /** SHA-256 en hexadecimal. */
+    public static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
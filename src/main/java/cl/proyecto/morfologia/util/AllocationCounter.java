@@ -0,0 +1,54 @@
+package cl.proyecto.morfologia.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contador de memoria asignada por tile.
+ * Usa los bytes asignados por hilo que reporta la JVM (HotSpot); si la JVM
+ * no lo soporta, las mediciones quedan en 0.
+ */
+public final class AllocationCounter {
+
+    private static final com.sun.management.ThreadMXBean MX = mxBean();
+
+    private final LongAdder tiles = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder copied = new LongAdder();
+
+    private static com.sun.management.ThreadMXBean mxBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean mx
+                && mx.isThreadAllocatedMemorySupported()) {
+            if (!mx.isThreadAllocatedMemoryEnabled()) mx.setThreadAllocatedMemoryEnabled(true);
+            return mx;
+        }
+        return null;
+    }
+
+    /** Bytes asignados hasta ahora por el hilo actual (0 si no se soporta). */
+    public static long threadBytes() {
+        return MX == null ? 0 : MX.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static boolean supported() { return MX != null; }
+
+    /** Registra un tile y los bytes que asignó. */
+    public void record(long allocatedBytes) {
+        tiles.increment();
+        bytes.add(allocatedBytes);
+    }
+
+    /** Registra bytes copiados explícitamente (sub-bloques con halo). */
+    public void addCopied(long n) { copied.add(n); }
+
+    public long tiles() { return tiles.sum(); }
+    public long bytes() { return bytes.sum(); }
+    public long copiedBytes() { return copied.sum(); }
+    public double bytesPerTile() { long t = tiles(); return t == 0 ? 0 : bytes() / (double) t; }
+
+    public void reset() {
+        tiles.reset();
+        bytes.reset();
+        copied.reset();
+    }
+}
@@ -1,7 +1,14 @@
 package cl.proyecto.morfologia.util;
 
+import cl.proyecto.morfologia.metrics.Metrics;
+
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 
 /**
@@ -9,13 +16,61 @@ import java.io.File;
  */
 public final class ImageIOUtils {
     public static BufferedImage readPng(File f) throws Exception {
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
         BufferedImage img = ImageIO.read(f);
         if (img == null) throw new IllegalArgumentException("No es una imagen válida PNG: " + f);
-        return toARGB(img);
+        BufferedImage out = toARGB(img);
+        Metrics.stage("png.decode", t0, (long) out.getWidth() * out.getHeight(), a0);
+        return out;
     }
 
     public static void writePng(BufferedImage img, File f) throws Exception {
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
         if (!ImageIO.write(img, "png", f)) throw new IllegalStateException("No se pudo escribir PNG: " + f);
+        Metrics.stage("png.encode", t0, (long) img.getWidth() * img.getHeight(), a0);
+    }
+
+    /**
+     * Como {@link #readPng(File)}, pero conserva las imágenes en escala de grises de 8 bits
+     * (TYPE_BYTE_GRAY) y binarias negro/blanco de 1 bit (TYPE_BYTE_BINARY) para que
+     * {@code Engines} las derive a sus rutas rápidas. El resto se convierte a ARGB.
+     */
+    public static BufferedImage readPngNative(File f) throws Exception {
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+        BufferedImage img = ImageIO.read(f);
+        if (img == null) throw new IllegalArgumentException("No es una imagen válida PNG: " + f);
+        BufferedImage out = isGrayOrBinary(img) ? img : toARGB(img);
+        Metrics.stage("png.decode", t0, (long) out.getWidth() * out.getHeight(), a0);
+        return out;
+    }
+
+    // Gris de 8 bits o binaria de 1 bit con paleta {negro, blanco}
+    public static boolean isGrayOrBinary(BufferedImage img) {
+        if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) return true;
+        return img.getType() == BufferedImage.TYPE_BYTE_BINARY
+                && img.getColorModel() instanceof IndexColorModel cm
+                && cm.getPixelSize() == 1 && cm.getMapSize() == 2 && !cm.hasAlpha()
+                && (cm.getRGB(0) & 0xFFFFFF) == 0x000000 && (cm.getRGB(1) & 0xFFFFFF) == 0xFFFFFF;
+    }
+
+    // Lee un PNG desde memoria (p. ej. el cuerpo de una petición HTTP)
+    public static BufferedImage readPng(byte[] data) throws Exception {
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+        BufferedImage img = ImageIO.read(new ByteArrayInputStream(data));
+        if (img == null) throw new IllegalArgumentException("No es una imagen válida PNG");
+        BufferedImage out = toARGB(img);
+        Metrics.stage("png.decode", t0, (long) out.getWidth() * out.getHeight(), a0);
+        return out;
+    }
+
+    // Codifica la imagen como PNG en memoria
+    public static byte[] pngBytes(BufferedImage img) throws Exception {
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(img.getWidth() * img.getHeight());
+        if (!ImageIO.write(img, "png", bos)) throw new IllegalStateException("No se pudo codificar PNG");
+        byte[] out = bos.toByteArray();
+        Metrics.stage("png.encode", t0, (long) img.getWidth() * img.getHeight(), a0);
+        return out;
     }
 
     // Convierte a formato ARGB para acceso más rápido.
@@ -29,6 +84,7 @@ public final class ImageIOUtils {
     // Divide en canales R, G, B
     public static void splitRGB(BufferedImage img, int[][] R, int[][] G, int[][] B) {
         final int w = img.getWidth(), h = img.getHeight();
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
         for (int y=0;y<h;y++){
             for (int x=0;x<w;x++){
                 int argb = img.getRGB(x,y);
@@ -37,11 +93,13 @@ public final class ImageIOUtils {
                 B[y][x] = argb&0xFF;
             }
         }
+        Metrics.stage("split", t0, (long) w * h, a0);
     }
 
     // Une canales R, G, B en una imagen
     public static BufferedImage mergeRGB(int[][] R, int[][] G, int[][] B) {
         int h = R.length, w = R[0].length;
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
         BufferedImage out = new BufferedImage(w,h, BufferedImage.TYPE_INT_ARGB);
         final int alpha = 0xFF<<24;
         for (int y=0;y<h;y++){
@@ -50,6 +108,48 @@ public final class ImageIOUtils {
                 out.setRGB(x,y, alpha | (r<<16) | (g<<8) | b);
             }
         }
+        Metrics.stage("merge", t0, (long) w * h, a0);
+        return out;
+    }
+
+    /**
+     * Devuelve los píxeles ARGB de la imagen como arreglo plano (fila por fila).
+     * Si la imagen es TYPE_INT_ARGB con raster compacto se devuelve directamente
+     * el arreglo del DataBufferInt (sin copia); en otro caso se copia con getRGB.
+     */
+    public static int[] argbPixels(BufferedImage img) {
+        final int w = img.getWidth(), h = img.getHeight();
+        if (img.getType() == BufferedImage.TYPE_INT_ARGB
+                && img.getRaster().getDataBuffer() instanceof DataBufferInt db
+                && img.getSampleModel() instanceof SinglePixelPackedSampleModel sm
+                && sm.getScanlineStride() == w
+                && img.getRaster().getSampleModelTranslateX() == 0
+                && img.getRaster().getSampleModelTranslateY() == 0
+                && db.getNumBanks() == 1 && db.getOffset() == 0
+                && db.getData().length == w * h) {
+            return db.getData();
+        }
+        return img.getRGB(0, 0, w, h, null, 0, w);
+    }
+
+    // Separa píxeles ARGB empaquetados en planos R, G, B de un byte por muestra
+    public static void splitPlanes(int[] argb, byte[] R, byte[] G, byte[] B) {
+        for (int i=0;i<argb.length;i++){
+            int p = argb[i];
+            R[i] = (byte)(p>>16);
+            G[i] = (byte)(p>>8);
+            B[i] = (byte)p;
+        }
+    }
+
+    // Une planos R, G, B en una imagen ARGB nueva (alfa opaco, igual que mergeRGB)
+    public static BufferedImage mergePlanes(byte[] R, byte[] G, byte[] B, int w, int h) {
+        BufferedImage out = new BufferedImage(w,h, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+        final int alpha = 0xFF<<24;
+        for (int i=0;i<dst.length;i++){
+            dst[i] = alpha | ((R[i]&0xFF)<<16) | ((G[i]&0xFF)<<8) | (B[i]&0xFF);
+        }
         return out;
     }
 }
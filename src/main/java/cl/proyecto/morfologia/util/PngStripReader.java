@@ -0,0 +1,248 @@
+package cl.proyecto.morfologia.util;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Lector PNG por filas: decodifica una fila a la vez sin cargar la imagen completa.
+ *
+ * - Soporta PNG no entrelazados de tipo gris, RGB, paleta, gris+alfa y RGBA,
+ *   con profundidad 1/2/4/8/16 bits.
+ * - Cada fila se entrega como píxeles ARGB empaquetados, con la misma conversión
+ *   que {@link ImageIOUtils#readPng} aplica a la imagen completa.
+ * - Solo mantiene en memoria la fila actual y la anterior (necesaria para los filtros).
+ */
+public final class PngStripReader implements AutoCloseable {
+
+    private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+
+    private final DataInputStream in;
+    private final InputStream pixels;
+    private final int width, height, bitDepth, colorType, channels, bpp, rowBytes;
+    private final BufferedImage rowImage, rowArgb;
+    private final Graphics2D rowGraphics;
+    private final int[] samples;
+    private byte[] prev, cur;
+    private int rowsRead;
+
+    public PngStripReader(File f) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16));
+        try {
+            if (in.readLong() != SIGNATURE) throw new IllegalArgumentException("No es una imagen válida PNG: " + f);
+            int len = in.readInt();
+            if (in.readInt() != type("IHDR")) throw new IllegalArgumentException("PNG sin IHDR: " + f);
+            width = in.readInt();
+            height = in.readInt();
+            bitDepth = in.readUnsignedByte();
+            colorType = in.readUnsignedByte();
+            in.readUnsignedByte(); // compresión (siempre 0)
+            in.readUnsignedByte(); // filtro (siempre 0)
+            int interlace = in.readUnsignedByte();
+            skipBytes(len - 13 + 4); // resto + CRC
+            if (interlace != 0) throw new IllegalArgumentException("PNG entrelazado no soportado en modo streaming: " + f);
+            channels = switch (colorType) {
+                case 0, 3 -> 1;
+                case 2 -> 3;
+                case 4 -> 2;
+                case 6 -> 4;
+                default -> throw new IllegalArgumentException("Tipo de color PNG inválido: " + colorType);
+            };
+            bpp = Math.max(1, channels * bitDepth / 8);
+            rowBytes = (int) (((long) width * channels * bitDepth + 7) / 8);
+            prev = new byte[rowBytes];
+            cur = new byte[rowBytes];
+            if (colorType == 2 && bitDepth == 8) {
+                rowImage = rowArgb = null;
+                rowGraphics = null;
+                samples = null;
+            } else {
+                rowImage = imageIoType(f).createBufferedImage(width, 1);
+                rowArgb = new BufferedImage(width, 1, BufferedImage.TYPE_INT_ARGB);
+                rowGraphics = rowArgb.createGraphics();
+                samples = new int[width * channels];
+            }
+            pixels = new InflaterInputStream(new IdatStream(), new java.util.zip.Inflater(), 1 << 16);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    public int width() { return width; }
+    public int height() { return height; }
+
+    /** true si el PNG es en escala de grises (con o sin alfa): R = G = B en todas las filas. */
+    public boolean isGray() { return colorType == 0 || colorType == 4; }
+
+    /**
+     * Decodifica la siguiente fila en argb (largo >= width).
+     */
+    public void readRow(int[] argb) throws IOException {
+        if (rowsRead >= height) throw new EOFException("No quedan filas");
+        int filter = pixels.read();
+        if (filter < 0) throw new EOFException("Datos PNG truncados en la fila " + rowsRead);
+        readFully(pixels, cur, rowBytes);
+        unfilter(filter, cur, prev);
+        toArgb(cur, argb);
+        byte[] t = prev; prev = cur; cur = t;
+        rowsRead++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (rowGraphics != null) rowGraphics.dispose();
+        in.close();
+    }
+
+    // ---------------------------------------------------------------- decodificación
+
+    private void unfilter(int filter, byte[] row, byte[] up) {
+        switch (filter) {
+            case 0 -> { }
+            case 1 -> { for (int i=bpp;i<rowBytes;i++) row[i] += row[i-bpp]; }
+            case 2 -> { for (int i=0;i<rowBytes;i++) row[i] += up[i]; }
+            case 3 -> {
+                for (int i=0;i<rowBytes;i++){
+                    int left = i >= bpp ? row[i-bpp] & 0xFF : 0;
+                    row[i] += (byte) ((left + (up[i] & 0xFF)) >>> 1);
+                }
+            }
+            case 4 -> {
+                for (int i=0;i<rowBytes;i++){
+                    int a = i >= bpp ? row[i-bpp] & 0xFF : 0;
+                    int b = up[i] & 0xFF;
+                    int c = i >= bpp ? up[i-bpp] & 0xFF : 0;
+                    row[i] += (byte) paeth(a, b, c);
+                }
+            }
+            default -> throw new IllegalArgumentException("Filtro PNG inválido: " + filter);
+        }
+    }
+
+    static int paeth(int a, int b, int c) {
+        int p = a + b - c, pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) return a;
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * Convierte una fila decodificada a ARGB. Para RGB de 8 bits se empaqueta directo;
+     * en los demás casos la fila se escribe en una imagen de 1 fila del mismo tipo que
+     * crearía ImageIO y se dibuja sobre ARGB como en {@link ImageIOUtils#toARGB}, así
+     * que gris, paleta, alfa y 16 bits quedan idénticos a la ruta en memoria.
+     */
+    private void toArgb(byte[] row, int[] argb) {
+        if (rowImage == null) {
+            for (int x=0, i=0; x<width; x++, i+=3){
+                argb[x] = (0xFF<<24) | ((row[i]&0xFF)<<16) | ((row[i+1]&0xFF)<<8) | (row[i+2]&0xFF);
+            }
+            return;
+        }
+        int n = width * channels;
+        if (bitDepth == 16) {
+            for (int i=0;i<n;i++) samples[i] = ((row[2*i]&0xFF)<<8) | (row[2*i+1]&0xFF);
+        } else if (bitDepth == 8) {
+            for (int i=0;i<n;i++) samples[i] = row[i]&0xFF;
+        } else {
+            int perByte = 8 / bitDepth, mask = (1 << bitDepth) - 1;
+            for (int i=0;i<n;i++) samples[i] = (row[i / perByte] >> (8 - bitDepth * (i % perByte + 1))) & mask;
+        }
+        rowImage.getRaster().setPixels(0, 0, width, 1, samples);
+        int[] dst = ((DataBufferInt) rowArgb.getRaster().getDataBuffer()).getData();
+        Arrays.fill(dst, 0);
+        rowGraphics.drawImage(rowImage, 0, 0, null);
+        System.arraycopy(dst, 0, argb, 0, width);
+    }
+
+    /**
+     * Tipo de imagen que usaría ImageIO.read para este archivo (solo lee la cabecera).
+     */
+    private static ImageTypeSpecifier imageIoType(File f) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(f)) {
+            Iterator<ImageReader> it = ImageIO.getImageReaders(iis);
+            if (!it.hasNext()) throw new IllegalArgumentException("No es una imagen válida PNG: " + f);
+            ImageReader r = it.next();
+            try {
+                r.setInput(iis, true, true);
+                return r.getImageTypes(0).next();
+            } finally {
+                r.dispose();
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- chunks
+
+    /** Entrega de corrido el contenido de los chunks IDAT, saltando los demás. */
+    private final class IdatStream extends InputStream {
+        private int remaining;
+        private boolean first = true, done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (remaining == 0) {
+                if (done || !nextIdat()) { done = true; return -1; }
+            }
+            int n = in.read(b, off, Math.min(len, remaining));
+            if (n < 0) throw new EOFException("PNG truncado");
+            remaining -= n;
+            return n;
+        }
+
+        private boolean nextIdat() throws IOException {
+            if (!first) skipBytes(4); // CRC del IDAT anterior
+            first = false;
+            while (true) {
+                int len = in.readInt(), t = in.readInt();
+                if (t == type("IDAT")) { remaining = len; return true; }
+                if (t == type("IEND")) return false;
+                skipBytes(len + 4L);
+            }
+        }
+    }
+
+    private void skipBytes(long n) throws IOException {
+        while (n > 0) {
+            long s = in.skip(n);
+            if (s <= 0) {
+                if (in.read() < 0) throw new EOFException("PNG truncado");
+                s = 1;
+            }
+            n -= s;
+        }
+    }
+
+    private static void readFully(InputStream s, byte[] b, int len) throws IOException {
+        int off = 0;
+        while (off < len) {
+            int n = s.read(b, off, len - off);
+            if (n < 0) throw new EOFException("Datos PNG truncados");
+            off += n;
+        }
+    }
+
+    static int type(String t) {
+        return (t.charAt(0)<<24) | (t.charAt(1)<<16) | (t.charAt(2)<<8) | t.charAt(3);
+    }
+}
@@ -0,0 +1,163 @@
+package cl.proyecto.morfologia.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Escritor PNG por filas: codifica cada fila apenas está lista.
+ *
+ * - Escribe RGB de 8 bits no entrelazado (el alfa siempre es opaco en la salida).
+ * - Por fila elige el filtro (None/Sub/Up/Paeth) con menor suma de diferencias absolutas,
+ *   la misma heurística que usan los codificadores habituales.
+ * - Los datos comprimidos se emiten en chunks IDAT de a 64 KB, así que la memoria
+ *   usada no depende del alto de la imagen.
+ */
+public final class PngStripWriter implements AutoCloseable {
+
+    private static final int CHUNK = 1 << 16;
+
+    private final DataOutputStream out;
+    private final DeflaterOutputStream pixels;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final int width, height, rowBytes;
+    private byte[] prev, cur;
+    private final byte[][] filtered;
+    private int rowsWritten;
+    private boolean closed;
+
+    public PngStripWriter(File f, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Dimensiones inválidas: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        this.rowBytes = width * 3;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), CHUNK));
+        out.writeLong(0x89504E470D0A1A0AL);
+        byte[] ihdr = new byte[13];
+        putInt(ihdr, 0, width);
+        putInt(ihdr, 4, height);
+        ihdr[8] = 8;  // bits por muestra
+        ihdr[9] = 2;  // RGB
+        chunk("IHDR", ihdr, ihdr.length);
+        this.pixels = new DeflaterOutputStream(new IdatStream(), deflater, CHUNK);
+        this.prev = new byte[rowBytes];
+        this.cur = new byte[rowBytes];
+        this.filtered = new byte[5][1 + rowBytes];
+    }
+
+    /**
+     * Codifica la siguiente fila (píxeles ARGB empaquetados, largo >= width).
+     */
+    public void writeRow(int[] argb) throws IOException {
+        if (rowsWritten >= height) throw new IllegalStateException("Se escribieron más filas que el alto declarado");
+        for (int x=0, i=0; x<width; x++, i+=3){
+            int p = argb[x];
+            cur[i] = (byte)(p>>16); cur[i+1] = (byte)(p>>8); cur[i+2] = (byte)p;
+        }
+        pixels.write(filter(), 0, 1 + rowBytes);
+        byte[] t = prev; prev = cur; cur = t;
+        rowsWritten++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (rowsWritten != height) {
+                throw new IllegalStateException("PNG incompleto: " + rowsWritten + " de " + height + " filas");
+            }
+            pixels.finish();
+            pixels.flush();
+            chunk("IEND", new byte[0], 0);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    // ---------------------------------------------------------------- filtros
+
+    private byte[] filter() {
+        final int bpp = 3;
+        long best = Long.MAX_VALUE;
+        int bestType = 0;
+        for (int type=0; type<5; type++){
+            if (type == 3) continue; // Average rara vez gana; se omite para abaratar
+            byte[] f = filtered[type];
+            f[0] = (byte) type;
+            long sum = 0;
+            for (int i=0;i<rowBytes;i++){
+                int x = cur[i] & 0xFF;
+                int a = i >= bpp ? cur[i-bpp] & 0xFF : 0;
+                int b = prev[i] & 0xFF;
+                int c = i >= bpp ? prev[i-bpp] & 0xFF : 0;
+                int pred = switch (type) {
+                    case 1 -> a;
+                    case 2 -> b;
+                    case 4 -> PngStripReader.paeth(a, b, c);
+                    default -> 0;
+                };
+                byte v = (byte) (x - pred);
+                f[1+i] = v;
+                sum += Math.abs((int) v);
+                if (sum >= best) break;
+            }
+            if (sum < best) { best = sum; bestType = type; }
+        }
+        return filtered[bestType];
+    }
+
+    // ---------------------------------------------------------------- chunks
+
+    /** Acumula los datos comprimidos y los emite como chunks IDAT. */
+    private final class IdatStream extends OutputStream {
+        private final byte[] buf = new byte[CHUNK];
+        private int n;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (n == buf.length) flush();
+            buf[n++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (n == buf.length) flush();
+                int k = Math.min(len, buf.length - n);
+                System.arraycopy(b, off, buf, n, k);
+                n += k; off += k; len -= k;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (n == 0) return;
+            chunk("IDAT", buf, n);
+            n = 0;
+        }
+    }
+
+    private void chunk(String type, byte[] data, int len) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] t = new byte[4];
+        putInt(t, 0, PngStripReader.type(type));
+        crc.update(t);
+        crc.update(data, 0, len);
+        out.writeInt(len);
+        out.write(t);
+        out.write(data, 0, len);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        b[off] = (byte)(v>>>24); b[off+1] = (byte)(v>>>16); b[off+2] = (byte)(v>>>8); b[off+3] = (byte)v;
+    }
+}
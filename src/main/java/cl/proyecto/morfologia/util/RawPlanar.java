@@ -0,0 +1,214 @@
+package cl.proyecto.morfologia.util;
+
+import cl.proyecto.morfologia.metrics.Metrics;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Formato crudo planar sin compresión (extensión .raw), pensado para guardar y recargar
+ * resultados intermedios sin el costo de codificar/decodificar PNG.
+ *
+ * - Cabecera de {@link #HEADER_BYTES} bytes (big-endian): "MRP1", ancho, alto, canales
+ *   (1 = gris, 3 = R, G, B) y bits por muestra (8); el resto en cero.
+ * - Luego los planos completos uno tras otro: canal c, fila y en
+ *   HEADER_BYTES + c*ancho*alto + y*ancho.
+ * - Se lee y escribe con {@link FileChannel#map}: los datos quedan fuera del heap y las
+ *   regiones se mapean por bandas de filas, así que no hay límite de 2 GB por archivo.
+ */
+public final class RawPlanar {
+
+    public static final int MAGIC = 0x4D525031; // "MRP1"
+    public static final int HEADER_BYTES = 32;
+
+    /** Filas por bloque al convertir desde o hacia PNG. */
+    private static final int ROWS = 256;
+
+    /**
+     * Cabecera del archivo.
+     */
+    public record Header(int width, int height, int channels, int bitDepth) {
+        public Header {
+            if (width <= 0 || height <= 0) throw new IllegalArgumentException("Dimensiones inválidas: " + width + "x" + height);
+            if (channels != 1 && channels != 3) throw new IllegalArgumentException("Canales no soportados (1 o 3): " + channels);
+            if (bitDepth != 8) throw new IllegalArgumentException("Profundidad no soportada (solo 8 bits): " + bitDepth);
+        }
+
+        public long planeBytes() { return (long) width * height; }
+
+        /** Posición en el archivo de la fila y del canal c. */
+        public long offset(int c, int y) { return HEADER_BYTES + c * planeBytes() + (long) y * width; }
+
+        public long fileBytes() { return HEADER_BYTES + channels * planeBytes(); }
+    }
+
+    public static Header readHeader(FileChannel ch) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(HEADER_BYTES);
+        while (b.hasRemaining()) {
+            if (ch.read(b, b.position()) < 0) throw new IllegalArgumentException("Archivo .raw truncado (sin cabecera)");
+        }
+        b.flip();
+        if (b.getInt() != MAGIC) throw new IllegalArgumentException("No es un archivo .raw planar (falta MRP1)");
+        Header h = new Header(b.getInt(), b.getInt(), b.getInt(), b.getInt());
+        if (ch.size() < h.fileBytes()) throw new IllegalArgumentException("Archivo .raw truncado: " + ch.size() + " < " + h.fileBytes());
+        return h;
+    }
+
+    /** Abre un archivo .raw de solo lectura (la cabecera se valida con {@link #readHeader}). */
+    public static FileChannel open(File f) throws IOException {
+        return FileChannel.open(f.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * Crea (o trunca) el archivo con la cabecera y el tamaño completo, listo para mapear
+     * sus planos en modo lectura/escritura.
+     */
+    public static FileChannel create(File f, Header h) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.setLength(0);
+            raf.setLength(h.fileBytes());
+        }
+        FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer b = ByteBuffer.allocate(HEADER_BYTES);
+        b.putInt(MAGIC).putInt(h.width()).putInt(h.height()).putInt(h.channels()).putInt(h.bitDepth());
+        b.position(0);
+        while (b.hasRemaining()) ch.write(b, b.position());
+        return ch;
+    }
+
+    /** Mapea las filas [y0, y1) del canal c. */
+    public static MappedByteBuffer map(FileChannel ch, Header h, int c, int y0, int y1, FileChannel.MapMode mode)
+            throws IOException {
+        return ch.map(mode, h.offset(c, y0), (long) (y1 - y0) * h.width());
+    }
+
+    // ---------------------------------------------------------------- imágenes en memoria
+
+    /**
+     * Carga el archivo como imagen: TYPE_BYTE_GRAY si tiene un canal, ARGB si tiene tres.
+     */
+    public static BufferedImage read(File f) throws IOException {
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+        try (FileChannel ch = open(f)) {
+            Header h = readHeader(ch);
+            if (h.planeBytes() > Integer.MAX_VALUE) throw new IllegalArgumentException("Imagen demasiado grande para cargarla completa: " + f);
+            int w = h.width(), n = (int) h.planeBytes();
+            BufferedImage out;
+            if (h.channels() == 1) {
+                out = new BufferedImage(w, h.height(), BufferedImage.TYPE_BYTE_GRAY);
+                map(ch, h, 0, 0, h.height(), FileChannel.MapMode.READ_ONLY)
+                        .get(((DataBufferByte) out.getRaster().getDataBuffer()).getData(), 0, n);
+            } else {
+                byte[] R = new byte[n], G = new byte[n], B = new byte[n];
+                map(ch, h, 0, 0, h.height(), FileChannel.MapMode.READ_ONLY).get(R);
+                map(ch, h, 1, 0, h.height(), FileChannel.MapMode.READ_ONLY).get(G);
+                map(ch, h, 2, 0, h.height(), FileChannel.MapMode.READ_ONLY).get(B);
+                out = ImageIOUtils.mergePlanes(R, G, B, w, h.height());
+            }
+            Metrics.stage("raw.read", t0, h.planeBytes(), a0);
+            return out;
+        }
+    }
+
+    /**
+     * Guarda la imagen: un canal si es TYPE_BYTE_GRAY, R, G y B en otro caso (sin alfa).
+     */
+    public static void write(BufferedImage img, File f) throws IOException {
+        long t0 = Metrics.start(), a0 = Metrics.startAlloc();
+        int w = img.getWidth(), hgt = img.getHeight();
+        boolean gray = img.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        Header h = new Header(w, hgt, gray ? 1 : 3, 8);
+        int[] row = new int[w];
+        byte[][] planes = new byte[h.channels()][w];
+        try (FileChannel ch = create(f, h)) {
+            for (int y0=0; y0<hgt; y0+=ROWS){
+                int y1 = Math.min(hgt, y0 + ROWS);
+                MappedByteBuffer[] dst = new MappedByteBuffer[h.channels()];
+                for (int c=0;c<dst.length;c++) dst[c] = map(ch, h, c, y0, y1, FileChannel.MapMode.READ_WRITE);
+                for (int y=y0;y<y1;y++){
+                    if (gray) {
+                        img.getRaster().getDataElements(0, y, w, 1, planes[0]);
+                    } else {
+                        img.getRGB(0, y, w, 1, row, 0, w);
+                        split(row, planes);
+                    }
+                    for (int c=0;c<dst.length;c++) dst[c].put(planes[c]);
+                }
+            }
+        }
+        Metrics.stage("raw.write", t0, h.planeBytes(), a0);
+    }
+
+    // ---------------------------------------------------------------- conversión PNG <-> raw
+
+    /**
+     * Convierte un PNG a .raw fila por fila (sin cargar la imagen completa). Los PNG en
+     * escala de grises quedan con un canal; el resto con tres (el alfa se descarta).
+     */
+    public static Header fromPng(File png, File raw) throws IOException {
+        try (PngStripReader r = new PngStripReader(png)) {
+            int w = r.width(), hgt = r.height();
+            Header h = new Header(w, hgt, r.isGray() ? 1 : 3, 8);
+            int[] row = new int[w];
+            byte[][] planes = new byte[h.channels()][w];
+            try (FileChannel ch = create(raw, h)) {
+                for (int y0=0; y0<hgt; y0+=ROWS){
+                    int y1 = Math.min(hgt, y0 + ROWS);
+                    MappedByteBuffer[] dst = new MappedByteBuffer[h.channels()];
+                    for (int c=0;c<dst.length;c++) dst[c] = map(ch, h, c, y0, y1, FileChannel.MapMode.READ_WRITE);
+                    for (int y=y0;y<y1;y++){
+                        r.readRow(row);
+                        if (h.channels() == 1) {
+                            for (int x=0;x<w;x++) planes[0][x] = (byte) row[x];
+                        } else {
+                            split(row, planes);
+                        }
+                        for (int c=0;c<dst.length;c++) dst[c].put(planes[c]);
+                    }
+                }
+            }
+            return h;
+        }
+    }
+
+    /**
+     * Convierte un .raw a PNG RGB de 8 bits fila por fila (sin cargar la imagen completa).
+     */
+    public static Header toPng(File raw, File png) throws IOException {
+        try (FileChannel ch = open(raw)) {
+            Header h = readHeader(ch);
+            int w = h.width(), hgt = h.height();
+            int[] row = new int[w];
+            byte[][] planes = new byte[h.channels()][w];
+            try (PngStripWriter out = new PngStripWriter(png, w, hgt)) {
+                for (int y0=0; y0<hgt; y0+=ROWS){
+                    int y1 = Math.min(hgt, y0 + ROWS);
+                    MappedByteBuffer[] src = new MappedByteBuffer[h.channels()];
+                    for (int c=0;c<src.length;c++) src[c] = map(ch, h, c, y0, y1, FileChannel.MapMode.READ_ONLY);
+                    for (int y=y0;y<y1;y++){
+                        for (int c=0;c<src.length;c++) src[c].get(planes[c]);
+                        byte[] R = planes[0], G = planes[h.channels() == 1 ? 0 : 1], B = planes[h.channels() == 1 ? 0 : 2];
+                        for (int x=0;x<w;x++) row[x] = 0xFF000000 | (R[x] & 0xFF) << 16 | (G[x] & 0xFF) << 8 | (B[x] & 0xFF);
+                        out.writeRow(row);
+                    }
+                }
+            }
+            return h;
+        }
+    }
+
+    private static void split(int[] argb, byte[][] planes) {
+        byte[] R = planes[0], G = planes[1], B = planes[2];
+        for (int x=0;x<argb.length;x++){
+            int p = argb[x];
+            R[x] = (byte)(p >> 16); G[x] = (byte)(p >> 8); B[x] = (byte) p;
+        }
+    }
+}